@@ -0,0 +1,44 @@
+import java.util.List;
+
+/**
+* ApportionmentMethod decides how many of an OPL election's seats each party wins from the party vote totals. Methods only
+* read the parties, so several of them can be compared over one tally without reading the election file again.
+*/
+public interface ApportionmentMethod {
+
+    /**
+    * <p> Decides how many seats each party wins. A party never wins more seats than it has candidates, so fewer seats
+    * than asked for are handed out when every party has run out of candidates. </p>
+    * @param  parties    parties of the election with their candidates added.
+    * @param  seats      number of seats to allocate.
+    * @param  tieBreaker TieBreaker for parties tied for a seat.
+    * @return int array with the number of seats won by each party, in the order of parties.
+    */
+    int[] apportion(List<OPLParty> parties, int seats, TieBreaker tieBreaker);
+
+    /**
+    * <p> Getter for the name of the method, as written to the audit file. </p>
+    * @return String name of the method.
+    */
+    String getName();
+
+    /**
+    * <p> Finds a method by the name given on the command line. </p>
+    * @param  name one of hare, dhondt or sainte-lague, in any case.
+    * @return ApportionmentMethod for that name, or null if there is none.
+    */
+    static ApportionmentMethod forName(String name) {
+        switch(name.toLowerCase()) {
+            case "hare":
+                return new HareApportionment();
+            case "dhondt":
+            case "d'hondt":
+                return new DHondtApportionment();
+            case "sainte-lague":
+            case "saintelague":
+                return new SainteLagueApportionment();
+            default:
+                return null;
+        }
+    }
+}
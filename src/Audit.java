@@ -1,19 +1,64 @@
 import java.io.*;
-import java.util.*; 
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 /**
-* Object giving streamlined abilities to write to an audit file for the election. 
+* Object giving streamlined abilities to write to an audit file for the election.
+*
+* <p> Records are handed to a background writer thread over a bounded queue, so the count does not wait on the file. The
+* writer takes every record waiting at once and writes them through a large buffer. If it falls behind and the queue fills
+* up, log() waits for room, so no record is ever dropped. Records only reach the file once the buffer fills or flush() or
+* close() is called, so the audit must be closed when the election ends. </p>
+*
+* <p> Typed AuditEvents are formatted by the writer thread, not by the count. Events above the level the audit is set to are
+* dropped before they are queued, and a JSON file can be opened to get each event as one line of JSON as well. Plain strings
+* passed to log() only go to the audit file. </p>
 * @author Logan Watters
 */
 
 public class Audit {
-    private File auditFile = null; 
-    private OutputStream stream = null; 
+    /**
+     * Most records waiting for the writer before log() waits for room
+     */
+    private static final int QUEUE_CAPACITY = 1 << 12;
+    /**
+     * Size of the buffer the records are written through
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Record telling the writer to write out what it has and stop
+     */
+    private static final Object CLOSE = new Object();
+    /**
+     * Name of the audit file in the directory the election writes to
+     */
+    public static final String FILE_NAME = "auditFile.txt";
+
+    private File auditFile = null;
+    private OutputStream stream = null;
+    private OutputStream jsonStream = null;
+    private AuditEvent.Level level = AuditEvent.Level.DETAIL;
+    private BlockingQueue<Object> queue;
+    private Thread writer;
+    private boolean closed;
+    private boolean discard;
+    private List<AuditEvent> recorder;
+    private ElectionMetrics metrics;
     /**
     * <p> Initializes the attributes of the Audit object when a new Audit object is created, creating a new file for the audit. </p>
     */
     public Audit() {
+        this(new File(FILE_NAME));
+    }
+    /**
+    * <p> Initializes an Audit object that appends to the given file, creating it if it does not exist. </p>
+    * @param   auditFile  File object for the audit file.
+    */
+    public Audit(File auditFile) {
+        this.auditFile = auditFile;
         try {
-            auditFile = new File("auditFile.txt");
             auditFile.createNewFile();
         } catch (IOException execpt) {
             System.out.println("ERROR: Unable to create file.");
@@ -23,16 +68,293 @@ public class Audit {
         } catch (IOException execpt) {
             System.out.println("ERROR: Unable to open file for writing correctly.");
         }
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
     }
     /**
-    * <p> Writes the string provided to the audit file created in the constructor. </p>
+    * <p> Initializes an Audit object that writes to the given stream instead of the audit file. </p>
+    * @param   stream  OutputStream the audit is written to.
+    */
+    public Audit(OutputStream stream) {
+        this.stream = stream;
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    }
+    /**
+    * <p> Creates an Audit object that throws every record away without starting a writer, for counts that are not audited. </p>
+    * @return  Audit object whose log() does nothing.
+    */
+    public static Audit discarding() {
+        Audit audit = new Audit((OutputStream) null);
+        audit.discard = true;
+        return audit;
+    }
+    /**
+    * <p> Hands the string provided to the writer, which writes it to the audit file created in the constructor. Waits for room if the
+    * writer has fallen behind. </p>
     * @param   info  String object representing the information to be written to the file.
     */
     public void log(String info) {
+        if(discard) {
+            return;
+        }
+        if(closed) {
+            System.out.println("ERROR: Unable to write information passed to audit file, it has been closed.");
+            return;
+        }
+        if(writer == null) {
+            startWriter();
+        }
+        enqueue(info);
+    }
+    /**
+    * <p> Hands an event to the writer, which formats it for the audit file and the JSON file. Events above the level of the audit
+    * are dropped. </p>
+    * @param   event  AuditEvent to write.
+    */
+    public void log(AuditEvent event) {
+        if(!isLogged(event.getLevel())) {
+            return;
+        }
+        if(recorder != null) {
+            recorder.add(event);
+        }
+        if(closed) {
+            System.out.println("ERROR: Unable to write information passed to audit file, it has been closed.");
+            return;
+        }
+        if(writer == null) {
+            startWriter();
+        }
+        enqueue(event);
+    }
+    /**
+    * <p> Checks if events of a level are written, so a caller can skip building an event that would be dropped. </p>
+    * @param   eventLevel  level of the event.
+    * @return  true if events of that level are written.
+    */
+    public boolean isLogged(AuditEvent.Level eventLevel) {
+        return !discard && eventLevel.compareTo(level) <= 0;
+    }
+    /**
+    * <p> Sets how much detail is written, SUMMARY leaves out the ballot totals of every candidate after each round. </p>
+    * @param   level  the most detailed level of event to write.
+    */
+    public void setLevel(AuditEvent.Level level) {
+        this.level = level;
+    }
+    /**
+    * <p> Getter for how much detail is written. </p>
+    * @return  the most detailed level of event written.
+    */
+    public AuditEvent.Level getLevel() {
+        return level;
+    }
+    /**
+    * <p> Keeps every event that is written in a list as well, so a caller can have the audit trail without reading it back
+    * from the file. </p>
+    * @param   recorder  List the events are added to in the order they are logged, or null to stop keeping them.
+    */
+    public void setRecorder(List<AuditEvent> recorder) {
+        this.recorder = recorder;
+    }
+    /**
+    * <p> Sets the metrics the time spent writing and the bytes written are added to. Must be called before anything is logged. </p>
+    * @param   metrics  ElectionMetrics of the election, or null to time nothing.
+    */
+    public void setMetrics(ElectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+    /**
+    * <p> Opens a file for appending every event to as one line of JSON. Must be called before anything is logged. </p>
+    * @param   jsonFile  File object for the JSON lines file.
+    */
+    public void openJson(File jsonFile) {
+        if(writer != null) {
+            System.out.println("ERROR: The JSON audit file must be opened before anything is logged.");
+            return;
+        }
         try {
-            stream.write(info.getBytes());
-        } catch (IOException execp) {
-            System.out.println("ERROR: Unable to write information passed to audit file.");
+            jsonStream = new FileOutputStream(jsonFile, true);
+        } catch (IOException execpt) {
+            System.out.println("ERROR: Unable to open JSON audit file for writing.");
+        }
+    }
+    /**
+    * <p> Waits until every record logged so far has been written to the audit file. </p>
+    */
+    public void flush() {
+        if(discard || closed || writer == null) {
+            return;
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        enqueue(written);
+        awaitUninterruptibly(written);
+    }
+    /**
+    * <p> Writes every record logged so far to the audit file, stops the writer and closes the file. Called once the election has
+    * ended, later records are refused. </p>
+    */
+    public void close() {
+        if(discard || closed) {
+            return;
+        }
+        closed = true;
+        if(writer != null) {
+            enqueue(CLOSE);
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    writer.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(stream != null) {
+            try {
+                stream.close();
+            } catch (IOException execp) {
+                System.out.println("ERROR: Unable to close audit file.");
+            }
+        }
+        if(jsonStream != null) {
+            try {
+                jsonStream.close();
+            } catch (IOException execp) {
+                System.out.println("ERROR: Unable to close JSON audit file.");
+            }
+        }
+    }
+    /**
+    * <p> Starts the background thread that writes the records. </p>
+    */
+    private void startWriter() {
+        writer = new Thread(this::write, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    /**
+    * <p> Body of the writer thread. Takes every record waiting at once and writes them through the buffer, until it is told to
+    * close. A failed write is reported once and the records after it are still taken, so log() never waits forever. </p>
+    */
+    private void write() {
+        OutputStream out = stream == null ? null : new BufferedOutputStream(stream, BUFFER_SIZE);
+        OutputStream json = jsonStream == null ? null : new BufferedOutputStream(jsonStream, BUFFER_SIZE);
+        ArrayList<Object> batch = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        boolean failed = out == null;
+        while(true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // only close() stops the writer, so records already logged are still written
+                continue;
+            }
+            queue.drainTo(batch);
+            ElectionMetrics.Timer phase = metrics == null ? null : metrics.begin(ElectionMetrics.Phase.AUDIT);
+            long bytes = 0;
+            for(Object record : batch) {
+                try {
+                    if(record instanceof String) {
+                        if(!failed) {
+                            byte[] line = ((String) record).getBytes();
+                            out.write(line);
+                            bytes += line.length;
+                        }
+                    } else if(record instanceof AuditEvent) {
+                        AuditEvent event = (AuditEvent) record;
+                        if(!failed) {
+                            text.setLength(0);
+                            event.format(text);
+                            byte[] lines = text.toString().getBytes();
+                            out.write(lines);
+                            bytes += lines.length;
+                        }
+                        if(json != null) {
+                            text.setLength(0);
+                            event.toJson(text);
+                            text.append('\n');
+                            byte[] line = text.toString().getBytes(StandardCharsets.UTF_8);
+                            json.write(line);
+                            bytes += line.length;
+                        }
+                    } else {
+                        if(!failed) {
+                            out.flush();
+                        }
+                        if(json != null) {
+                            json.flush();
+                        }
+                        if(record == CLOSE) {
+                            endPhase(phase, bytes);
+                            return;
+                        }
+                        ((CountDownLatch) record).countDown();
+                    }
+                } catch (IOException execp) {
+                    System.out.println("ERROR: Unable to write information passed to audit file.");
+                    failed = true;
+                    json = null;
+                    if(record instanceof CountDownLatch) {
+                        ((CountDownLatch) record).countDown();
+                    }
+                    if(record == CLOSE) {
+                        endPhase(phase, bytes);
+                        return;
+                    }
+                }
+            }
+            endPhase(phase, bytes);
+            batch.clear();
+        }
+    }
+    /**
+    * <p> Adds the time the writer spent on one batch of records and the bytes it wrote to the metrics. </p>
+    * @param   phase  Timer begun when the batch was taken, or null if the audit has no metrics.
+    * @param   bytes  number of bytes written for the batch.
+    */
+    private void endPhase(ElectionMetrics.Timer phase, long bytes) {
+        if(phase != null) {
+            metrics.end(phase, 0, bytes);
+        }
+    }
+    /**
+    * <p> Puts a record on the queue, waiting for room as long as it takes. </p>
+    * @param   record  String to write, or a marker for the writer.
+    */
+    private void enqueue(Object record) {
+        boolean interrupted = false;
+        while(true) {
+            try {
+                queue.put(record);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+    * <p> Waits for the writer to count down a latch. </p>
+    * @param   latch  CountDownLatch the writer counts down once it has written the records before it.
+    */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while(true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -0,0 +1,414 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+* AuditEvent is one typed record of the audit trail. An event keeps the numbers it reports rather than the text, and is only
+* formatted by the audit writer thread, as the lines of the human-readable audit file and as one line of JSON for the
+* machine-readable one. Events above the level an Audit is set to are never formatted, and callers can ask the Audit before
+* building an expensive event at all.
+*/
+public abstract class AuditEvent {
+
+    /**
+     * How much detail an event adds to the audit trail
+     */
+    public enum Level {
+        /** the state of the election, each elimination or seat awarded and the result */
+        SUMMARY,
+        /** also the ballot totals of every running candidate after each round */
+        DETAIL
+    }
+
+    /**
+    * <p> Getter for the level of the event. </p>
+    * @return Level the Audit must be set to for the event to be written.
+    */
+    public Level getLevel() {
+        return Level.SUMMARY;
+    }
+
+    /**
+    * <p> Appends the lines of the event as they appear in the human-readable audit file. </p>
+    * @param  text StringBuilder to append to.
+    */
+    public abstract void format(StringBuilder text);
+
+    /**
+    * <p> Appends the event as one JSON object, without a newline. </p>
+    * @param  json StringBuilder to append to.
+    */
+    public abstract void toJson(StringBuilder json);
+
+    /**
+    * <p> Appends a string as a quoted JSON string. </p>
+    * @param  json StringBuilder to append to.
+    * @param  s    string to quote.
+    */
+    protected static void quote(StringBuilder json, String s) {
+        json.append('"');
+        for(int i = 0; i<s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if(c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+    * <p> Appends a candidate as a JSON object of its name and ballots. </p>
+    * @param  json    StringBuilder to append to.
+    * @param  name    name of the candidate.
+    * @param  ballots number of ballots or votes of the candidate.
+    */
+    protected static void candidate(StringBuilder json, String name, int ballots) {
+        json.append("{\"name\":");
+        quote(json, name);
+        json.append(",\"ballots\":").append(ballots).append('}');
+    }
+
+    /**
+    * <p> Works out a share of the ballots the way the audit file has always shown it. </p>
+    * @param  ballots      ballots of the candidate.
+    * @param  totalBallots ballots in the election.
+    * @return double percentage of the ballots.
+    */
+    protected static double percentage(int ballots, int totalBallots) {
+        return (double) ballots / (double) totalBallots * 100;
+    }
+
+    /**
+     * The state of an IR or OPL election before any ballots move or seats are awarded
+     */
+    public static class InitialState extends AuditEvent {
+        private final String votingType;
+        private final int numBallots;
+        private final String[] names;
+        private final String[] parties;
+        private final int[] ballots;
+        private final int[] invalidated;
+        private final String[] partyNames;
+        private final int[] partyVotes;
+
+        /**
+        * <p> Creates the event, keeping the names and counts of the candidates and parties as they are now. </p>
+        * @param  votingType  IR or OPL.
+        * @param  numBallots  number of ballots in the election.
+        * @param  candidates  candidates of the election.
+        * @param  invalidated total, under-ranked and malformed invalidated ballots, or null if they were not counted.
+        * @param  parties     parties of an OPL election, or null.
+        */
+        public InitialState(String votingType, int numBallots, List<Candidate> candidates, int[] invalidated, Collection<OPLParty> parties) {
+            this.votingType = votingType;
+            this.numBallots = numBallots;
+            this.names = new String[candidates.size()];
+            this.parties = new String[candidates.size()];
+            this.ballots = new int[candidates.size()];
+            for(int i = 0; i<candidates.size(); i++) {
+                Candidate c = candidates.get(i);
+                names[i] = c.getName();
+                this.parties[i] = c.getParty();
+                ballots[i] = c.getBallotCount();
+            }
+            this.invalidated = invalidated;
+            if(parties == null) {
+                this.partyNames = null;
+                this.partyVotes = null;
+            } else {
+                this.partyNames = new String[parties.size()];
+                this.partyVotes = new int[parties.size()];
+                int i = 0;
+                for(OPLParty p : parties) {
+                    partyNames[i] = p.getName();
+                    partyVotes[i++] = p.getTotalVotes();
+                }
+            }
+        }
+
+        @Override
+        public void format(StringBuilder text) {
+            text.append("INITIAL STATE OF ELECTION\n");
+            text.append("-------------------------\n\n");
+            text.append("Type of voting: ").append(votingType).append('\n');
+            text.append("Number of candidates: ").append(names.length).append('\n');
+            text.append("Number of ballots: ").append(numBallots).append('\n');
+            if(partyNames == null) {
+                if(invalidated != null) {
+                    text.append("Number of invalidated ballots: ").append(invalidated[0]).append(" (").append(invalidated[1])
+                        .append(" under-ranked, ").append(invalidated[2]).append(" malformed)\n");
+                }
+                for(int i = 0; i<names.length; i++) {
+                    text.append(names[i]).append(" has ").append(ballots[i]).append(" ballots, which is ")
+                        .append(percentage(ballots[i], numBallots)).append("%.\n");
+                }
+                text.append("-------------------------\n\n");
+                return;
+            }
+            text.append("-------------------------\n");
+            text.append("Candidate totals: \n");
+            for(int i = 0; i<names.length; i++) {
+                text.append(parties[i]).append(": ").append(names[i]).append(" with ").append(ballots[i]).append(" votes\n");
+            }
+            text.append("-------------------------\n");
+            text.append("Party totals: \n");
+            for(int i = 0; i<partyNames.length; i++) {
+                text.append(partyNames[i]).append(" has ").append(partyVotes[i]).append(" total votes.\n");
+            }
+            text.append("-------------------------\n\n");
+        }
+
+        @Override
+        public void toJson(StringBuilder json) {
+            json.append("{\"event\":\"initial_state\",\"voting\":");
+            quote(json, votingType);
+            json.append(",\"ballots\":").append(numBallots);
+            if(invalidated != null) {
+                json.append(",\"invalidated\":{\"total\":").append(invalidated[0]).append(",\"under_ranked\":").append(invalidated[1])
+                    .append(",\"malformed\":").append(invalidated[2]).append('}');
+            }
+            json.append(",\"candidates\":[");
+            for(int i = 0; i<names.length; i++) {
+                if(i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"name\":");
+                quote(json, names[i]);
+                json.append(",\"party\":");
+                quote(json, parties[i]);
+                json.append(",\"ballots\":").append(ballots[i]).append('}');
+            }
+            json.append(']');
+            if(partyNames != null) {
+                json.append(",\"parties\":[");
+                for(int i = 0; i<partyNames.length; i++) {
+                    if(i > 0) {
+                        json.append(',');
+                    }
+                    candidate(json, partyNames[i], partyVotes[i]);
+                }
+                json.append(']');
+            }
+            json.append('}');
+        }
+    }
+
+    /**
+     * One IR candidate eliminated with the fewest ballots, or a group of candidates eliminated together
+     */
+    public static class CandidateEliminated extends AuditEvent {
+        private final String[] names;
+        private final int[] ballots;
+        private final String nextName;
+        private final int nextBallots;
+
+        /**
+        * <p> Creates the event for a candidate eliminated with the fewest ballots. </p>
+        * @param  can the candidate eliminated.
+        */
+        public CandidateEliminated(Candidate can) {
+            this.names = new String[] {can.getName()};
+            this.ballots = new int[] {can.getBallotCount()};
+            this.nextName = null;
+            this.nextBallots = 0;
+        }
+
+        /**
+        * <p> Creates the event for a group of candidates eliminated together. </p>
+        * @param  group the candidates eliminated, fewest ballots first.
+        * @param  next  the candidate whose ballots their combined ballots fall short of.
+        */
+        public CandidateEliminated(List<? extends Candidate> group, Candidate next) {
+            this.names = new String[group.size()];
+            this.ballots = new int[group.size()];
+            for(int i = 0; i<group.size(); i++) {
+                names[i] = group.get(i).getName();
+                ballots[i] = group.get(i).getBallotCount();
+            }
+            this.nextName = next.getName();
+            this.nextBallots = next.getBallotCount();
+        }
+
+        @Override
+        public void format(StringBuilder text) {
+            if(nextName == null) {
+                text.append("CANDIDATE REMOVED\n");
+                text.append("-------------------------\n\n");
+                text.append(names[0]).append(" has the fewest votes with ").append(ballots[0]).append(" ballots.\n");
+                text.append("Their ballots will be redistributed\n");
+                return;
+            }
+            int combined = 0;
+            text.append("CANDIDATES REMOVED TOGETHER\n");
+            text.append("-------------------------\n\n");
+            for(int i = 0; i<names.length; i++) {
+                text.append(names[i]).append(" has ").append(ballots[i]).append(" ballots.\n");
+                combined += ballots[i];
+            }
+            text.append("Their combined ").append(combined).append(" ballots are fewer than the ").append(nextBallots).append(" ballots of ")
+                .append(nextName).append(", so none of them can win.\n");
+            text.append("Their ballots will be redistributed\n");
+        }
+
+        @Override
+        public void toJson(StringBuilder json) {
+            json.append("{\"event\":\"candidate_eliminated\",\"candidates\":[");
+            for(int i = 0; i<names.length; i++) {
+                if(i > 0) {
+                    json.append(',');
+                }
+                candidate(json, names[i], ballots[i]);
+            }
+            json.append(']');
+            if(nextName != null) {
+                json.append(",\"next\":");
+                candidate(json, nextName, nextBallots);
+            }
+            json.append('}');
+        }
+    }
+
+    /**
+     * The ballots of every running IR candidate after a round of redistribution
+     */
+    public static class RoundTotals extends AuditEvent {
+        private final String[] names;
+        private final int[] ballots;
+        private final int numBallots;
+
+        /**
+        * <p> Creates the event, keeping the ballots of the running candidates as they are now. </p>
+        * @param  candidates the IR candidates of the election.
+        * @param  numBallots number of ballots in the election.
+        */
+        public RoundTotals(List<Candidate> candidates, int numBallots) {
+            int running = 0;
+            for(Candidate c : candidates) {
+                if(((IRCandidate) c).getRunningStatus()) {
+                    running++;
+                }
+            }
+            this.names = new String[running];
+            this.ballots = new int[running];
+            int i = 0;
+            for(Candidate c : candidates) {
+                if(((IRCandidate) c).getRunningStatus()) {
+                    names[i] = c.getName();
+                    ballots[i++] = c.getBallotCount();
+                }
+            }
+            this.numBallots = numBallots;
+        }
+
+        @Override
+        public Level getLevel() {
+            return Level.DETAIL;
+        }
+
+        @Override
+        public void format(StringBuilder text) {
+            text.append("BALLOT TOTALS AFTER REDISTRIBUTION\n");
+            text.append("-------------------------\n\n");
+            for(int i = 0; i<names.length; i++) {
+                text.append(names[i]).append(" now has ").append(ballots[i]).append(" ballots, which is ")
+                    .append(percentage(ballots[i], numBallots)).append("%.\n");
+            }
+        }
+
+        @Override
+        public void toJson(StringBuilder json) {
+            json.append("{\"event\":\"round_totals\",\"candidates\":[");
+            for(int i = 0; i<names.length; i++) {
+                if(i > 0) {
+                    json.append(',');
+                }
+                candidate(json, names[i], ballots[i]);
+            }
+            json.append("]}");
+        }
+    }
+
+    /**
+     * A seat awarded to a candidate, or the winner of an IR election
+     */
+    public static class SeatAwarded extends AuditEvent {
+
+        /**
+         * How the seat was won
+         */
+        public enum Kind {
+            /** the IR winner, with a majority or the most ballots of the last two candidates */
+            WINNER,
+            /** an MPO seat won with the most votes of the candidates not yet seated */
+            MOST_VOTES,
+            /** an OPL seat won by the party, in the first round or from an apportionment method */
+            PARTY_SEAT,
+            /** an OPL seat won by the party with the votes it had left after the first round */
+            PARTY_REMAINDER
+        }
+
+        private final Kind kind;
+        private final String name;
+        private final String party;
+        private final int votes;
+        private final int seat;
+        private final int numBallots;
+
+        /**
+        * <p> Creates the event. </p>
+        * @param  kind       how the seat was won.
+        * @param  can        the candidate awarded the seat.
+        * @param  votes      votes the seat was won with, the party's votes left for PARTY_REMAINDER.
+        * @param  seat       number of the seat, from 1 in the order the seats are awarded.
+        * @param  numBallots number of ballots in the election.
+        */
+        public SeatAwarded(Kind kind, Candidate can, int votes, int seat, int numBallots) {
+            this.kind = kind;
+            this.name = can.getName();
+            this.party = can.getParty();
+            this.votes = votes;
+            this.seat = seat;
+            this.numBallots = numBallots;
+        }
+
+        @Override
+        public void format(StringBuilder text) {
+            switch(kind) {
+                case WINNER:
+                    text.append("ELECTION HAS ENDED");
+                    text.append("-------------------------\n\n");
+                    text.append(name).append(" has won with ").append(votes).append(" votes, which is ")
+                        .append(percentage(votes, numBallots)).append("%.\n");
+                    break;
+                case MOST_VOTES:
+                    text.append("SEAT FILLED\n");
+                    text.append("-------------------------\n");
+                    text.append(name).append(" had the most votes with ").append(votes).append(" and has been awarded seat ").append(seat).append(".\n\n");
+                    break;
+                case PARTY_SEAT:
+                    text.append(name).append(" has been seated for the ").append(party).append(" party.\n");
+                    break;
+                default:
+                    text.append(name).append(" was seated for the ").append(party).append(" party with their ").append(votes).append(" remaining votes.\n");
+                    break;
+            }
+        }
+
+        @Override
+        public void toJson(StringBuilder json) {
+            json.append("{\"event\":\"seat_awarded\",\"kind\":");
+            quote(json, kind.name().toLowerCase());
+            json.append(",\"candidate\":");
+            quote(json, name);
+            json.append(",\"party\":");
+            quote(json, party);
+            json.append(",\"votes\":").append(votes);
+            json.append(",\"seat\":").append(seat);
+            json.append(",\"ballots\":").append(numBallots);
+            json.append('}');
+        }
+    }
+}
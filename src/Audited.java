@@ -0,0 +1,12 @@
+/**
+* Audited is implemented by the voting systems that write an audit trail, so how much it records and where can be set before
+* the election is run.
+*/
+public interface Audited {
+
+    /**
+    * <p> Getter for the Audit the election writes its audit trail to. </p>
+    * @return Audit of the election.
+    */
+    Audit getAudit();
+}
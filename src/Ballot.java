@@ -1,14 +1,13 @@
 /**
- * Object representing a ballot with a unique ID for audit purposes
+ * Object representing a ballot. Ballots hold no shared state, so elections counted at the same time never interfere with
+ * each other.
  */
 
 public class Ballot {
-    private static int id = 0;
 
     /**
      * Constructor
      */
     public Ballot() {
-        id += 1;
     }
 }
@@ -0,0 +1,338 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+* BallotReader reads an election file as raw bytes through a memory mapped FileChannel. Lines are found by scanning the
+* mapped bytes for newlines directly, so reading a ballot does not create a String or run a regex the way Scanner does.
+* Files larger than one mapping window are mapped one window at a time. Gzip compressed files cannot be mapped, so they
+* are read from a decompressing stream into a reused buffer instead.
+*/
+public class BallotReader implements Closeable {
+    /**
+     * Largest region of the file that is mapped at once
+     */
+    private static final long WINDOW_SIZE = 1L << 28;
+    /**
+     * Size of the buffer decompressed data is read into
+     */
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    /**
+     * Most bytes allocated up front for a string of a binary file, longer ones grow as they are read
+     */
+    private static final int STRING_PRESIZE_LIMIT = 1 << 12;
+
+    private FileChannel channel;
+    private boolean ownsChannel;
+    private InputStream stream;
+    private ByteBuffer window;
+    private long windowStart;
+    private long end;
+    private byte[] line;
+    private int lineLength;
+
+    /**
+    * <p> Opens the election file and maps the first window of it for reading. </p>
+    * @param  fp a File object for the election csv file.
+    * @throws IOException if the file cannot be opened or mapped.
+    */
+    public BallotReader(File fp) throws IOException {
+        channel = FileChannel.open(fp.toPath(), StandardOpenOption.READ);
+        ownsChannel = true;
+        end = channel.size();
+        line = new byte[256];
+        map(0);
+    }
+
+    /**
+    * <p> Creates a reader over one region of a channel that is already open, so several readers can scan different
+    * parts of the same file at once. Closing this reader does not close the shared channel. </p>
+    * @param  channel open FileChannel of the election file.
+    * @param  start   absolute offset in the file to start reading at.
+    * @param  end     absolute offset in the file to stop reading at.
+    * @throws IOException if the region cannot be mapped.
+    */
+    public BallotReader(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        ownsChannel = false;
+        this.end = end;
+        line = new byte[256];
+        map(start);
+    }
+
+    /**
+    * <p> Creates a reader over a stream, used for files that cannot be mapped such as gzip compressed ones. The stream is
+    * closed when the reader is closed. </p>
+    * @param  stream InputStream positioned at the start of the election file's contents.
+    */
+    public BallotReader(InputStream stream) {
+        this.stream = stream;
+        end = Long.MAX_VALUE;
+        line = new byte[256];
+        window = ByteBuffer.wrap(new byte[STREAM_BUFFER_SIZE]);
+        window.limit(0);
+        windowStart = 0;
+    }
+
+    /**
+    * <p> Opens an election file, mapping it if it is a plain file and decompressing it as it is read if it starts with
+    * the gzip magic number. </p>
+    * @param  fp a File object for the election file, either .csv or .csv.gz.
+    * @return BallotReader positioned at the start of the file's contents.
+    * @throws IOException if the file cannot be opened.
+    */
+    public static BallotReader open(File fp) throws IOException {
+        if(GzipBallotStream.isGzip(fp)) {
+            return new BallotReader(new GzipBallotStream(fp));
+        }
+        return new BallotReader(fp);
+    }
+
+    /**
+    * <p> Checks if the unread bytes start with the given bytes, without consuming them. Only meant to be called before
+    * anything has been read, to recognize a file format. </p>
+    * @param  prefix bytes to look for.
+    * @return true if the next bytes match the prefix.
+    */
+    public boolean startsWith(byte[] prefix) throws IOException {
+        if(stream != null && window.position() == 0 && window.limit() < prefix.length) {
+            int filled = window.limit();
+            window.limit(window.capacity());
+            while(filled < prefix.length) {
+                int n = stream.read(window.array(), filled, window.capacity() - filled);
+                if(n < 0) {
+                    break;
+                }
+                filled += n;
+            }
+            window.limit(filled);
+        }
+        if(window.remaining() < prefix.length) {
+            return false;
+        }
+        for(int i = 0; i<prefix.length; i++) {
+            if(window.get(window.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * <p> Reads the next line into the reusable line buffer. A trailing carriage return is dropped. </p>
+    * @return the number of bytes in the line, or -1 if the end of the file has been reached.
+    */
+    public int nextLine() throws IOException {
+        if(!hasRemaining()) {
+            return -1;
+        }
+        lineLength = 0;
+        while(hasRemaining()) {
+            byte b = window.get();
+            if(b == '\n') {
+                break;
+            }
+            if(lineLength == line.length) {
+                byte[] bigger = new byte[line.length * 2];
+                System.arraycopy(line, 0, bigger, 0, lineLength);
+                line = bigger;
+            }
+            line[lineLength++] = b;
+        }
+        if(lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        return lineLength;
+    }
+
+    /**
+    * <p> Counts the commas at the start of the next line and skips the rest of it without copying any bytes. For OPL and MPO
+    * ballots this count is the index of the candidate the ballot was cast for. </p>
+    * @return the number of leading commas, or -1 if the end of the file has been reached.
+    */
+    public int nextLeadingCommaCount() throws IOException {
+        if(!hasRemaining()) {
+            return -1;
+        }
+        int commas = 0;
+        boolean counting = true;
+        while(hasRemaining()) {
+            byte b = window.get();
+            if(b == '\n') {
+                break;
+            }
+            if(counting) {
+                if(b == ',') {
+                    commas++;
+                } else {
+                    counting = false;
+                }
+            }
+        }
+        return commas;
+    }
+
+    /**
+    * <p> Reads the next line as a String. Only meant for the few header lines of a file. </p>
+    * @return the next line, or null if the end of the file has been reached.
+    */
+    public String nextLineString() throws IOException {
+        if(nextLine() < 0) {
+            return null;
+        }
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+    * <p> Reads a single byte, used for files in the binary ballot format. </p>
+    * @return the next byte as an int from 0 to 255, or -1 if the end of the file has been reached.
+    */
+    public int readByte() throws IOException {
+        if(!hasRemaining()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    /**
+    * <p> Reads an unsigned variable length integer written by BinaryBallotFile, 7 bits per byte with the high bit set on every
+    * byte but the last. </p>
+    * @return the decoded int.
+    * @throws EOFException if the file ends in the middle of the integer.
+    */
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            if(b < 0) {
+                throw new EOFException("Binary ballot file ends in the middle of a number");
+            }
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in binary ballot file");
+    }
+
+    /**
+    * <p> Reads a UTF-8 string written by BinaryBallotFile as its byte length followed by its bytes. </p>
+    * @return the decoded String.
+    * @throws IOException if the length is negative or more than the bytes left in the file.
+    */
+    public String readString() throws IOException {
+        long offset = position();
+        int length = readVarInt();
+        if(length < 0 || length > end - position()) {
+            throw new IOException("Binary ballot file has a string of " + Integer.toUnsignedString(length) + " bytes at byte "
+                + offset + ", more than are left in the file");
+        }
+        // the length of a stream is not known, so the length read is not trusted for the allocation
+        byte[] bytes = new byte[Math.min(length, STRING_PRESIZE_LIMIT)];
+        for(int i = 0; i<length; i++) {
+            int b = readByte();
+            if(b < 0) {
+                throw new EOFException("Binary ballot file ends in the middle of a string");
+            }
+            if(i == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            bytes[i] = (byte) b;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+    * <p> Getter for the line buffer. Only the first getLineLength() bytes belong to the current line. </p>
+    * @return byte array holding the line most recently read by nextLine().
+    */
+    public byte[] getLine() {
+        return line;
+    }
+
+    /**
+    * <p> Getter for the length of the line most recently read by nextLine(). </p>
+    * @return int representing the number of bytes in the current line.
+    */
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+    * <p> Getter for the absolute file offset of the next byte to be read. </p>
+    * @return long representing the current position in the file.
+    */
+    public long position() {
+        return windowStart + window.position();
+    }
+
+    /**
+    * <p> Getter for the absolute file offset the reader stops at. </p>
+    * @return long representing the end of the readable region, Long.MAX_VALUE for a stream of unknown length.
+    */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+    * <p> Getter for the underlying file channel. </p>
+    * @return the FileChannel the reader maps its windows from, or null if the reader is over a stream.
+    */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+    * <p> Closes the underlying file channel if this reader opened it, or the underlying stream. </p>
+    */
+    @Override
+    public void close() throws IOException {
+        if(stream != null) {
+            stream.close();
+        } else if(ownsChannel) {
+            channel.close();
+        }
+    }
+
+    /**
+    * <p> Checks if there are bytes left to read, mapping the next window of the file or refilling the stream buffer if the
+    * current one is used up. </p>
+    * @return true if at least one more byte can be read.
+    */
+    private boolean hasRemaining() throws IOException {
+        if(window.hasRemaining()) {
+            return true;
+        }
+        if(stream != null) {
+            int n;
+            do {
+                n = stream.read(window.array(), 0, window.capacity());
+            } while(n == 0);
+            if(n < 0) {
+                return false;
+            }
+            windowStart += window.limit();
+            window.clear();
+            window.limit(n);
+            return true;
+        }
+        long next = windowStart + window.limit();
+        if(next >= end) {
+            return false;
+        }
+        map(next);
+        return true;
+    }
+
+    /**
+    * <p> Maps the window of the file starting at the given offset. </p>
+    * @param  start absolute offset in the file the window should begin at.
+    */
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, end - start));
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+* BinaryBallotFile converts .csv election files into a compact, versioned binary format, and holds the constants needed to
+* recognize and read that format. HeaderProcessor and FileProcessor read binary files directly, so a converted file can be
+* passed to Election in place of the .csv file.
+*
+* <p> Every number is an unsigned varint (7 bits per byte, high bit set on all but the last byte) and every string is its
+* UTF-8 byte length followed by its bytes. The layout is: </p>
+* <pre>
+* magic "EBAL", version byte
+* voting system string, number of seats (0 for IR), number of candidates
+* name and party string for each candidate, in ballot order
+* number of ballots declared in the header, number of ballot records that follow
+* OPL and MPO records: index of the candidate voted for
+* IR records: number of candidates ranked, number of ranks n, then for ranks 1 to n the candidate index plus one (0 if no candidate was given that rank)
+* </pre>
+*/
+public class BinaryBallotFile {
+    private static final byte[] MAGIC = {'E', 'B', 'A', 'L'};
+    /**
+     * Version of the layout written by convert(), bumped whenever the layout changes
+     */
+    public static final int VERSION = 1;
+
+    /**
+    * <p> Checks if a file starts with the binary ballot format's magic number. </p>
+    * @param  fp a File object for an election file.
+    * @return true if the file is a binary ballot file, false if it is not or cannot be read.
+    */
+    public static boolean isBinary(File fp) {
+        try (InputStream in = new FileInputStream(fp)) {
+            for(int i = 0; i<MAGIC.length; i++) {
+                if(in.read() != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+    * <p> Checks if the contents a reader is about to read start with the binary ballot format's magic number, without
+    * consuming anything. This also recognizes binary ballot files that have been gzip compressed. </p>
+    * @param  reader BallotReader positioned at the start of the file.
+    * @return true if the contents are a binary ballot file.
+    */
+    public static boolean isBinary(BallotReader reader) throws IOException {
+        return reader.startsWith(MAGIC);
+    }
+
+    /**
+    * <p> Reads the magic number and version at the start of a binary ballot file. </p>
+    * @param  reader BallotReader positioned at the start of the file.
+    * @throws IOException if the file is not a binary ballot file or was written by an unsupported version.
+    */
+    public static void checkMagic(BallotReader reader) throws IOException {
+        for(int i = 0; i<MAGIC.length; i++) {
+            if(reader.readByte() != MAGIC[i]) {
+                throw new IOException("Not a binary ballot file");
+            }
+        }
+        int version = reader.readByte();
+        if(version != VERSION) {
+            throw new IOException("Unsupported binary ballot file version " + version);
+        }
+    }
+
+    /**
+    * <p> Converts a .csv election file to the binary ballot format. The .csv file is read once, ballot by ballot, so the
+    * conversion runs in constant memory. </p>
+    * @param  csv    a File object for the .csv election file.
+    * @param  binary a File object for the binary file to be written, replaced if it exists.
+    * @return int representing the number of ballots written.
+    */
+    public static int convert(File csv, File binary) throws IOException {
+        HeaderProcessor header = new HeaderProcessor(csv);
+        File body = File.createTempFile("ballots", ".bin", binary.getAbsoluteFile().getParentFile());
+        int records = 0;
+        try {
+            try (BallotReader reader = header.openBallots();
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(body), 1 << 16)) {
+                int numberOfCandidates = header.getNumCandidates();
+                if(header.getVotingSystem().equals("IR")) {
+                    int[] rankings = new int[numberOfCandidates];
+                    while(reader.nextLine() >= 0) {
+                        int candidatesRanked = FileProcessor.parseRanks(reader.getLine(), reader.getLineLength(), rankings);
+                        if(candidatesRanked == FileProcessor.MALFORMED) {
+                            // the format has no way to keep an unreadable line, so it is stored as a blank ballot
+                            writeVarInt(out, 0);
+                            writeVarInt(out, 0);
+                            records++;
+                            continue;
+                        }
+                        int ranks = numberOfCandidates;
+                        while(ranks > 0 && rankings[ranks - 1] < 0) {
+                            ranks--;
+                        }
+                        writeVarInt(out, candidatesRanked);
+                        writeVarInt(out, ranks);
+                        for(int i = 0; i<ranks; i++) {
+                            writeVarInt(out, rankings[i] + 1);
+                        }
+                        records++;
+                    }
+                } else {
+                    int candidateIndex;
+                    while((candidateIndex = reader.nextLeadingCommaCount()) >= 0) {
+                        writeVarInt(out, candidateIndex);
+                        records++;
+                    }
+                }
+            }
+
+            // the record count goes in the header, so the body is written first and copied in after it
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(binary), 1 << 16);
+                 InputStream in = new FileInputStream(body)) {
+                out.write(MAGIC);
+                out.write(VERSION);
+                writeString(out, header.getVotingSystem());
+                writeVarInt(out, header.getNumSeats());
+                writeVarInt(out, header.getNumCandidates());
+                for(Candidate c : header.getCandidates()) {
+                    writeString(out, c.getName());
+                    writeString(out, c.getParty());
+                }
+                writeVarInt(out, header.getNumBallots());
+                writeVarInt(out, records);
+                in.transferTo(out);
+            }
+        } finally {
+            body.delete();
+        }
+        return records;
+    }
+
+    /**
+    * <p> Writes an unsigned variable length integer, 7 bits per byte. </p>
+    * @param  out   stream to write to.
+    * @param  value non negative int to write.
+    */
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+    * <p> Writes a string as its UTF-8 byte length followed by its bytes. </p>
+    * @param  out   stream to write to.
+    * @param  value String to write.
+    */
+    static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+    * <p> Converts the .csv election file named by the first argument into a binary ballot file named by the second. </p>
+    */
+    public static void main(String args[]) throws IOException {
+        if(args.length != 2) {
+            System.out.println("Usage: java BinaryBallotFile <election.csv> <election.ebal>");
+            return;
+        }
+        int records = convert(new File(args[0]), new File(args[1]));
+        System.out.println("Wrote " + records + " ballots to " + args[1]);
+    }
+}
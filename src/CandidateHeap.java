@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+* CandidateHeap is an indexed binary heap of candidate ballot indexes ordered by ballot count, with either the fewest or the
+* most ballots on top. It remembers where each candidate sits in the heap, so a candidate whose count changes or who is
+* eliminated is moved or removed in O(log C) without searching for it. Candidates with equal counts are ordered by ballot
+* index, so the heap is the same whatever order the changes are made in.
+*/
+public class CandidateHeap {
+    private final boolean most;
+    private int[] heap;
+    private int[] position;
+    private int[] count;
+    private int size;
+
+    /**
+    * <p> Creates an empty heap. </p>
+    * @param  numberOfCandidates number of candidates in the election, the largest ballot index is one less.
+    * @param  most               true to keep the candidate with the most ballots on top, false for the fewest.
+    */
+    public CandidateHeap(int numberOfCandidates, boolean most) {
+        this.most = most;
+        heap = new int[numberOfCandidates];
+        position = new int[numberOfCandidates];
+        count = new int[numberOfCandidates];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    /**
+    * <p> Adds a candidate to the heap, or updates its count if it is already there. </p>
+    * @param  candidate ballot index of the candidate.
+    * @param  ballots   number of ballots the candidate holds.
+    */
+    public void update(int candidate, int ballots) {
+        int at = position[candidate];
+        if(at < 0) {
+            count[candidate] = ballots;
+            heap[size] = candidate;
+            position[candidate] = size;
+            siftUp(size++);
+            return;
+        }
+        int old = count[candidate];
+        count[candidate] = ballots;
+        if(ballots != old) {
+            siftUp(at);
+            siftDown(position[candidate]);
+        }
+    }
+
+    /**
+    * <p> Removes a candidate from the heap, if it is there. </p>
+    * @param  candidate ballot index of the candidate.
+    */
+    public void remove(int candidate) {
+        int at = position[candidate];
+        if(at < 0) {
+            return;
+        }
+        position[candidate] = -1;
+        size--;
+        if(at == size) {
+            return;
+        }
+        int last = heap[size];
+        heap[at] = last;
+        position[last] = at;
+        siftUp(at);
+        siftDown(position[last]);
+    }
+
+    /**
+    * <p> Checks if a candidate is in the heap. </p>
+    * @param  candidate ballot index of the candidate.
+    * @return true if the candidate has been added and not removed.
+    */
+    public boolean contains(int candidate) {
+        return position[candidate] >= 0;
+    }
+
+    /**
+    * <p> Getter for the candidate on top of the heap. </p>
+    * @return ballot index of the candidate with the fewest or most ballots, or -1 if the heap is empty.
+    */
+    public int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+    * <p> Getter for the ballot count of the candidate on top of the heap. </p>
+    * @return int number of ballots of the top candidate.
+    */
+    public int peekCount() {
+        return count[heap[0]];
+    }
+
+    /**
+    * <p> Finds every candidate tied with the top of the heap. Only the part of the heap holding the tied candidates is
+    * visited. </p>
+    * @return IntList of the ballot indexes of the tied candidates, in ballot index order.
+    */
+    public IntList ties() {
+        IntList tied = new IntList(4);
+        if(size == 0) {
+            return tied;
+        }
+        int top = count[heap[0]];
+        // a tied candidate's parent is tied too, so the tied candidates form a subtree under the top
+        IntList visit = new IntList(4);
+        visit.add(0);
+        for(int i = 0; i<visit.size(); i++) {
+            int at = visit.get(i);
+            if(at < size && count[heap[at]] == top) {
+                tied.add(heap[at]);
+                visit.add(2 * at + 1);
+                visit.add(2 * at + 2);
+            }
+        }
+        tied.sort();
+        return tied;
+    }
+
+    /**
+    * <p> Getter for the number of candidates in the heap. </p>
+    * @return int representing how many candidates are in the heap.
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+    * <p> Checks if one candidate belongs above another. </p>
+    * @param  a ballot index of the first candidate.
+    * @param  b ballot index of the second candidate.
+    * @return true if a should be nearer the top than b.
+    */
+    private boolean above(int a, int b) {
+        if(count[a] != count[b]) {
+            return most ? count[a] > count[b] : count[a] < count[b];
+        }
+        return a < b;
+    }
+
+    /**
+    * <p> Moves the candidate at a heap position up until its parent belongs above it. </p>
+    * @param  at position in the heap.
+    */
+    private void siftUp(int at) {
+        int candidate = heap[at];
+        while(at > 0) {
+            int parent = (at - 1) >>> 1;
+            if(!above(candidate, heap[parent])) {
+                break;
+            }
+            heap[at] = heap[parent];
+            position[heap[at]] = at;
+            at = parent;
+        }
+        heap[at] = candidate;
+        position[candidate] = at;
+    }
+
+    /**
+    * <p> Moves the candidate at a heap position down until neither child belongs above it. </p>
+    * @param  at position in the heap.
+    */
+    private void siftDown(int at) {
+        int candidate = heap[at];
+        while(true) {
+            int child = 2 * at + 1;
+            if(child >= size) {
+                break;
+            }
+            if(child + 1 < size && above(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if(!above(heap[child], candidate)) {
+                break;
+            }
+            heap[at] = heap[child];
+            position[heap[at]] = at;
+            at = child;
+        }
+        heap[at] = candidate;
+        position[candidate] = at;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+* DHondtApportionment is the D'Hondt method, a divisor method dividing each party's votes by 1, 2, 3 and so on. It leans
+* towards larger parties.
+*/
+public class DHondtApportionment extends DivisorApportionment {
+
+    @Override
+    protected int divisor(int seatsWon) {
+        return seatsWon + 1;
+    }
+
+    @Override
+    public String getName() {
+        return "D'Hondt";
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+* DivisorApportionment hands out seats one at a time to the party with the highest quotient, its votes divided by a
+* divisor that grows with the seats it has won. The parties are kept in a heap ordered by quotient, so each seat costs
+* O(log P) and allocating S seats to P parties costs O(S log P). Quotients are compared by cross-multiplying votes and
+* divisors, so equal quotients are always found equal. Parties tied on the highest quotient are seated together, and are
+* only shuffled when there are more of them than seats left, so a tie that cannot change the result draws nothing.
+*/
+public abstract class DivisorApportionment implements ApportionmentMethod {
+
+    /**
+    * <p> Getter for the divisor of a party that has won some seats. </p>
+    * @param  seatsWon number of seats the party has won so far.
+    * @return int divisor of the party's votes for its next seat, always positive.
+    */
+    protected abstract int divisor(int seatsWon);
+
+    @Override
+    public int[] apportion(List<OPLParty> parties, int seats, TieBreaker tieBreaker) {
+        int numParties = parties.size();
+        long[] votes = new long[numParties];
+        for(int i = 0; i<numParties; i++) {
+            votes[i] = parties.get(i).getTotalVotes();
+        }
+        int[] won = new int[numParties];
+        Comparator<Integer> byQuotient = (a, b) -> compareQuotients(votes, won, a, b);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, numParties), byQuotient.thenComparing(Comparator.naturalOrder()));
+        for(int i = 0; i<numParties; i++) {
+            if(parties.get(i).getNumCandidates() > 0) {
+                heap.add(i);
+            }
+        }
+        int seatsLeft = seats;
+        ArrayList<Integer> tied = new ArrayList<>();
+        while(seatsLeft > 0 && !heap.isEmpty()) {
+            tied.clear();
+            tied.add(heap.poll());
+            while(!heap.isEmpty() && compareQuotients(votes, won, heap.peek(), tied.get(0)) == 0) {
+                tied.add(heap.poll());
+            }
+            if(tied.size() > seatsLeft) {
+                // only a tie for the last seats decides who is seated
+                tieBreaker.shuffle(tied);
+                tied.subList(seatsLeft, tied.size()).clear();
+            }
+            // a seat always lowers a party's quotient, so seating the whole group at once is the same as seating it one at a time
+            for(int party : tied) {
+                won[party]++;
+                seatsLeft--;
+                if(won[party] < parties.get(party).getNumCandidates()) {
+                    heap.add(party);
+                }
+            }
+        }
+        return won;
+    }
+
+    /**
+    * <p> Compares the quotients of two parties by cross-multiplying, so equal quotients are always found equal. </p>
+    * @param  votes votes of each party.
+    * @param  won   seats won so far by each party.
+    * @param  a     index of one party.
+    * @param  b     index of the other party.
+    * @return int below zero if party a has the higher quotient, zero if they are equal, above zero otherwise.
+    */
+    private int compareQuotients(long[] votes, int[] won, int a, int b) {
+        return Long.compare(votes[b] * divisor(won[a]), votes[a] * divisor(won[b]));
+    }
+}
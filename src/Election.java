@@ -1,60 +1,165 @@
-import java.io.File;
-import java.io.FileNotFoundException;
-
-/**
- * Election objects are created by main and are responsible for creating a header processor and a voting system based on the results from the header processor
- * 
- * @author Matthew Johnson
- */
-public class Election{
-    /**
-     * File pointer to the .csv ballot file
-     */
-    private File fp;
-    /**
-     * HeaderProcessor used to call parseHeader on the .csv ballot file
-     */
-    private HeaderProcessor headerProcessor;
-    /**
-     * The VotingSystem object created to run the specified election type
-     */
-    private VotingSystem votingSystem;
-
-    /**
-     * <p>Constructor for election objects, takes in a file pointer from main and creates a headerProcessor object. It will then create a 
-     * votingSystem object by calling parseHeader() on the headerProcessor object. Then it will call runElection on the votingSystem object.
-     * @param fp file pointer pointed to the .csv ballot information file. This file should be tested valid by main before passed in
-     * @throws FileNotFoundException if, incase the testing of validity in main lets a bad file descriptor through, this constructor will throw a FileNotFoundException
-     */
-    public Election(File fp) throws FileNotFoundException {
-        this.fp = fp;
-        this.headerProcessor = new HeaderProcessor(fp);
-        this.votingSystem = headerProcessor.parseHeader();
-        votingSystem.runElection();
-    }
-
-    // getters for testing
-    /**
-     * <p>Getter for the file pointer field</p>
-     * @return the file pointer held in fp
-     */
-    public File getFp(){
-        return fp;
-    }
-
-    /**
-     * <p>Getter for the headerProcessor field</p>
-     * @return the headerProcessor object held in headerProcessor
-     */
-    public HeaderProcessor getHeaderProcessor() {
-        return headerProcessor;
-    }
-
-    /**
-     * <p>Getter for the votingSystem field</p>
-     * @return the votingSystem object held in votingSystem
-     */
-    public VotingSystem getVotingSystem() {
-        return votingSystem;
-    }
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+
+/**
+ * Election objects are created by main and are responsible for creating a header processor and a voting system based on the results from the header processor
+ * 
+ * @author Matthew Johnson
+ */
+public class Election{
+    /**
+     * File pointer to the .csv ballot file
+     */
+    private File fp;
+    /**
+     * HeaderProcessor used to call parseHeader on the .csv ballot file
+     */
+    private HeaderProcessor headerProcessor;
+    /**
+     * The VotingSystem object created to run the specified election type
+     */
+    private VotingSystem votingSystem;
+    /**
+     * Times the phases of the count, and writes them to metrics.json when --metrics is given
+     */
+    private ElectionMetrics metrics;
+
+    /**
+     * <p>Constructor for election objects, takes in a file pointer from main and creates a headerProcessor object. It will then create a 
+     * votingSystem object by calling parseHeader() on the headerProcessor object. Then it will call runElection on the votingSystem object.
+     * If the file pointer is a directory, every file in it is read as one part of the same election.
+     * @param fp file pointer pointed to the .csv ballot information file, or a directory of them. This file should be tested valid by main before passed in
+     * @throws FileNotFoundException if, incase the testing of validity in main lets a bad file descriptor through, this constructor will throw a FileNotFoundException
+     */
+    public Election(File fp) throws FileNotFoundException {
+        this(fp, false);
+    }
+
+    /**
+     * <p>Constructor for election objects that can turn on batch elimination for IR elections, which removes every candidate that can
+     * no longer win in one round instead of one candidate per round. The winner is the same either way.</p>
+     * @param fp file pointer pointed to the .csv ballot information file, or a directory of them
+     * @param batchElimination true to eliminate defeated IR candidates together
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public Election(File fp, boolean batchElimination) throws FileNotFoundException {
+        this(fp, batchOptions(batchElimination));
+    }
+
+    /**
+     * <p>Constructor for election objects counted with the options given on the command line.</p>
+     * @param fp file pointer pointed to the .csv ballot information file, or a directory of them
+     * @param options ElectionOptions to count the election with
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public Election(File fp, ElectionOptions options) throws FileNotFoundException {
+        this.fp = fp;
+        if(options.getOutputDir() != null) {
+            options.getOutputDir().mkdirs();
+        }
+        this.metrics = new ElectionMetrics(fp.getPath(), options.getMetrics());
+        if(fp.isDirectory()) {
+            parseFiles(MultiFileProcessor.listElectionFiles(fp), options.getOutputDir());
+        } else {
+            this.headerProcessor = new HeaderProcessor(fp, options.getOutputDir());
+            headerProcessor.setMetrics(metrics);
+            this.votingSystem = headerProcessor.parseHeader();
+        }
+        options.apply(votingSystem);
+        ElectionMetrics.Timer count = metrics.begin(ElectionMetrics.Phase.COUNT);
+        votingSystem.runElection();
+        metrics.end(count);
+        if(options.getMetrics()) {
+            metrics.write(new File(options.getOutputDir(), ElectionMetrics.FILE_NAME));
+        }
+        if(options.getSimulations() > 0) {
+            simulateTies(options.getSimulations());
+        }
+    }
+
+    /**
+     * <p>Runs the tie-dependent part of the election many times and prints how likely each candidate is to win or be seated. The simulation
+     * is seeded from the seed the election broke its ties with, so one seed repeats both.</p>
+     * @param trials number of times to run the tie-dependent part of the count
+     */
+    private void simulateTies(int trials) {
+        if(!(votingSystem instanceof TieBreaking)) {
+            System.out.println("ERROR: Ties cannot be simulated for this type of election.");
+            return;
+        }
+        TieBreaking election = (TieBreaking) votingSystem;
+        TieSimulator simulator = new TieSimulator(trials, new TieBreaker(election.getTieBreaker().getSeed()));
+        simulator.run(election, votingSystem.getCandidates().size());
+        simulator.printResults(votingSystem.getCandidates());
+    }
+
+    /**
+     * <p>Creates the options for an election that only sets batch elimination</p>
+     * @param batchElimination true to eliminate defeated IR candidates together
+     * @return ElectionOptions with batch elimination set
+     */
+    private static ElectionOptions batchOptions(boolean batchElimination) {
+        ElectionOptions options = new ElectionOptions();
+        options.setBatchElimination(batchElimination);
+        return options;
+    }
+
+    /**
+     * <p>Constructor for elections split across several files with identical headers, such as one file per precinct. The files
+     * are read concurrently by a MultiFileProcessor and their ballots are counted together in one votingSystem.</p>
+     * @param files list of .csv ballot files that make up the election
+     * @throws FileNotFoundException if one of the files does not exist
+     */
+    public Election(List<File> files) throws FileNotFoundException {
+        this.fp = files.isEmpty() ? null : files.get(0);
+        parseFiles(files, null);
+        votingSystem.runElection();
+    }
+
+    /**
+     * <p>Reads the ballots of every file and creates the votingSystem over all of them</p>
+     * @param files list of .csv ballot files that make up the election
+     * @param outputDir directory the audit and invalidated ballot files go in, null for the working directory
+     * @throws FileNotFoundException if one of the files does not exist
+     */
+    private void parseFiles(List<File> files, File outputDir) throws FileNotFoundException {
+        MultiFileProcessor multiFileProcessor = new MultiFileProcessor(files, outputDir);
+        multiFileProcessor.setMetrics(metrics);
+        this.votingSystem = multiFileProcessor.parseFiles();
+        this.headerProcessor = multiFileProcessor.getHeaderProcessor();
+    }
+
+    // getters for testing
+    /**
+     * <p>Getter for the file pointer field</p>
+     * @return the file pointer held in fp
+     */
+    public File getFp(){
+        return fp;
+    }
+
+    /**
+     * <p>Getter for the headerProcessor field</p>
+     * @return the headerProcessor object held in headerProcessor
+     */
+    public HeaderProcessor getHeaderProcessor() {
+        return headerProcessor;
+    }
+
+    /**
+     * <p>Getter for the votingSystem field</p>
+     * @return the votingSystem object held in votingSystem
+     */
+    public VotingSystem getVotingSystem() {
+        return votingSystem;
+    }
+
+    /**
+     * <p>Getter for the metrics field</p>
+     * @return the ElectionMetrics the election was timed with, null if the election was given as a list of files
+     */
+    public ElectionMetrics getMetrics() {
+        return metrics;
+    }
 }
\ No newline at end of file
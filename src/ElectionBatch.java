@@ -0,0 +1,258 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* ElectionBatch counts many separate elections in one run, such as every down-ballot contest of a night, on a bounded thread
+* pool. Each election is given its own directory for its audit file, invalidated ballot file and printed results, so the
+* elections share nothing while they are counted. Once every election is done a summary of all of them is written to
+* summary.csv in the batch's output directory.
+*
+* <p> The results an election prints are sent to its own directory through ThreadOutput, so anything printed by a thread that
+* is not counting an election still reaches the console. </p>
+*/
+public class ElectionBatch {
+    /**
+     * Name of the summary written to the batch's output directory
+     */
+    public static final String SUMMARY_FILE = "summary.csv";
+    /**
+     * Name of the file each election's printed results are written to, in its own directory
+     */
+    public static final String RESULTS_FILE = "results.txt";
+
+    private List<File> elections;
+    private File outputDir;
+    private ElectionOptions options;
+    private int threads;
+    private List<Result> results;
+
+    /**
+    * <p> What came of counting one election of the batch. </p>
+    */
+    public static class Result {
+        private final File election;
+        private final File outputDir;
+        private String votingSystem = "";
+        private int numBallots;
+        private String[] winners = new String[0];
+        private long millis;
+        private String error;
+
+        /**
+        * <p> Creates the result of an election that has not been counted yet. </p>
+        * @param  election  File of the election, or a directory of files making up one election.
+        * @param  outputDir directory the election writes to.
+        */
+        Result(File election, File outputDir) {
+            this.election = election;
+            this.outputDir = outputDir;
+        }
+
+        public File getElection() {
+            return election;
+        }
+
+        public File getOutputDir() {
+            return outputDir;
+        }
+
+        public String getVotingSystem() {
+            return votingSystem;
+        }
+
+        public int getNumBallots() {
+            return numBallots;
+        }
+
+        public String[] getWinners() {
+            return winners;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+        * <p> Getter for why the election could not be counted. </p>
+        * @return String describing the error, or null if the election was counted.
+        */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+    * <p> Creates a batch that counts up to one election per available processor at a time. </p>
+    * @param  elections list of election files, or directories of files that each make up one election.
+    * @param  outputDir directory each election's own directory and the summary are written in.
+    * @param  options   ElectionOptions every election is counted with, its output directory is replaced for each election.
+    */
+    public ElectionBatch(List<File> elections, File outputDir, ElectionOptions options) {
+        this(elections, outputDir, options, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    * <p> Creates a batch that counts up to the given number of elections at a time. </p>
+    * @param  elections list of election files, or directories of files that each make up one election.
+    * @param  outputDir directory each election's own directory and the summary are written in.
+    * @param  options   ElectionOptions every election is counted with, its output directory is replaced for each election.
+    * @param  threads   an int representing the most elections to count at once.
+    */
+    public ElectionBatch(List<File> elections, File outputDir, ElectionOptions options, int threads) {
+        this.elections = new ArrayList<>(elections);
+        this.outputDir = outputDir;
+        this.options = options;
+        this.threads = Math.max(1, Math.min(threads, Math.max(1, elections.size())));
+    }
+
+    /**
+    * <p> Lists the elections in a directory in name order, skipping hidden entries. Each file is one election and each
+    * subdirectory is one election split across the files in it. </p>
+    * @param  directory directory holding the elections of the batch.
+    * @return List of the elections in the directory.
+    */
+    public static List<File> listElections(File directory) {
+        File[] entries = directory.listFiles(f -> !f.isHidden());
+        if(entries == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(entries);
+        return new ArrayList<>(Arrays.asList(entries));
+    }
+
+    /**
+    * <p> Counts every election of the batch and writes the summary. An election that cannot be counted is recorded in the
+    * summary with its error and does not stop the others. </p>
+    * @return List of the results, in the same order as the elections.
+    */
+    public List<Result> run() {
+        outputDir.mkdirs();
+        results = new ArrayList<>();
+        HashSet<String> names = new HashSet<>();
+        for(File election : elections) {
+            results.add(new Result(election, new File(outputDir, uniqueName(election, names))));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> counted = new ArrayList<>();
+            for(Result result : results) {
+                counted.add(pool.submit(() -> count(result)));
+            }
+            for(Future<?> done : counted) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting elections", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to count elections", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        writeSummary(new File(outputDir, SUMMARY_FILE));
+        return results;
+    }
+
+    /**
+    * <p> Counts one election, sending what it prints from this thread to its results file. </p>
+    * @param  result Result of the election, filled in once it has been counted.
+    */
+    private void count(Result result) {
+        result.outputDir.mkdirs();
+        ElectionOptions electionOptions = new ElectionOptions(options);
+        electionOptions.setOutputDir(result.outputDir);
+        long start = System.nanoTime();
+        try (OutputStream printed = new BufferedOutputStream(new FileOutputStream(new File(result.outputDir, RESULTS_FILE)))) {
+            ThreadOutput.redirect(printed);
+            try {
+                Election election = new Election(result.election, electionOptions);
+                VotingSystem votingSystem = election.getVotingSystem();
+                result.votingSystem = votingSystem.getClass().getName().replace("VotingSystem", "");
+                result.numBallots = votingSystem.getNumberOfBallots();
+                result.winners = ElectionResult.winnersOf(votingSystem);
+            } catch (Exception e) {
+                result.error = e.getClass().getSimpleName() + (e.getMessage() == null ? "" : ": " + e.getMessage());
+                System.out.println("ERROR: Unable to count " + result.election + ", " + result.error);
+            } finally {
+                ThreadOutput.restore();
+            }
+        } catch (IOException e) {
+            result.error = "Unable to write " + RESULTS_FILE;
+        }
+        result.millis = (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+    * <p> Names the directory of an election after its file, without the extension, adding a number if two elections would
+    * share a directory. </p>
+    * @param  election File of the election.
+    * @param  names    names already given to other elections of the batch.
+    * @return String name of the election's directory.
+    */
+    private static String uniqueName(File election, Set<String> names) {
+        String base = election.getName();
+        int dot = base.indexOf('.');
+        if(dot > 0 && !election.isDirectory()) {
+            base = base.substring(0, dot);
+        }
+        String name = base;
+        for(int i = 2; !names.add(name); i++) {
+            name = base + "-" + i;
+        }
+        return name;
+    }
+
+    /**
+    * <p> Writes one line per election to the summary, in the order the elections were given. </p>
+    * @param  summaryFile File the summary is written to, replacing any summary already there.
+    */
+    private void writeSummary(File summaryFile) {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(summaryFile)))) {
+            out.println("election,type,ballots,winners,milliseconds,status");
+            for(Result result : results) {
+                out.println(csvField(result.election.getName()) + "," + result.votingSystem + "," + result.numBallots + ","
+                    + csvField(String.join("; ", result.winners)) + "," + result.millis + ","
+                    + (result.error == null ? "OK" : csvField("ERROR: " + result.error)));
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write summary file.");
+        }
+    }
+
+    /**
+    * <p> Quotes a summary field if it holds a comma or a quote. </p>
+    * @param  field String to write as one field.
+    * @return String safe to write as one .csv field.
+    */
+    private static String csvField(String field) {
+        if(field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+    * <p> Prints how many elections were counted and where their results went. </p>
+    */
+    public void printSummary() {
+        int failed = 0;
+        for(Result result : results) {
+            if(result.error != null) {
+                failed++;
+                System.out.println("ERROR: " + result.election.getName() + " could not be counted, " + result.error);
+            }
+        }
+        System.out.println("Counted " + (results.size() - failed) + " of " + results.size() + " elections, results are in "
+            + outputDir + " with a summary in " + new File(outputDir, SUMMARY_FILE));
+    }
+
+    /**
+    * <p> Getter for the results of the batch. </p>
+    * @return List of the results, or null before run() has been called.
+    */
+    public List<Result> getResults() {
+        return results;
+    }
+}
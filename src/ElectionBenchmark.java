@@ -0,0 +1,347 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+* ElectionBenchmark times the stages of counting an election over generated election files of every size asked for, so a
+* slowdown between releases shows up as a number that changed. Each benchmark is run for some warm-up iterations that are
+* thrown away and then for the measured iterations, and reports the mean and fastest time per operation along with the bytes
+* the counting thread allocated and the garbage collections that happened per operation.
+*
+* <p> The benchmarks are: </p>
+* <pre>
+* parseHeader.TYPE        HeaderProcessor.parseHeader(), reading the header and every ballot of an IR, OPL or MPO file
+* processFile.BRANCH      FileProcessor.processFile() alone, for the .csv, binary and gzip branches, on one thread
+* runElection.TYPE        runElection() of an IR, OPL or MPO election whose ballots have already been read
+* runElection.IR.round    the mean time of one IR elimination round, taken from the audit events of runElection.IR
+* </pre>
+*
+* <p> Only the thread running the benchmark is counted for allocation, so FileProcessor is given one tally thread and the
+* audit file is formatted on its own thread and left out. The results are printed as a table and can also be written to a
+* .csv file with --csv, with one line per benchmark and size. </p>
+*/
+public class ElectionBenchmark {
+    private static final String[] TYPES = {"IR", "OPL", "MPO"};
+
+    private final int[] ballotCounts;
+    private final int[] candidateCounts;
+    private final int warmup;
+    private final int iterations;
+    private final File workDir;
+    private final ArrayList<String[]> rows = new ArrayList<>();
+
+    /**
+    * <p> Work done for one operation, set up outside of the time measured. </p>
+    */
+    private interface Operation {
+        /**
+        * <p> Sets up one operation without timing it. </p>
+        * @return Runnable doing the work that is timed.
+        */
+        Runnable prepare() throws IOException;
+    }
+
+    /**
+    * <p> Creates a benchmark over every pair of ballot count and candidate count. </p>
+    * @param  ballotCounts    numbers of ballots of the generated elections.
+    * @param  candidateCounts numbers of candidates of the generated elections.
+    * @param  warmup          iterations run before the measured ones.
+    * @param  iterations      iterations measured.
+    * @param  workDir         directory the generated files and the audit files are written to.
+    */
+    public ElectionBenchmark(int[] ballotCounts, int[] candidateCounts, int warmup, int iterations, File workDir) {
+        this.ballotCounts = ballotCounts;
+        this.candidateCounts = candidateCounts;
+        this.warmup = warmup;
+        this.iterations = Math.max(1, iterations);
+        this.workDir = workDir;
+    }
+
+    /**
+    * <p> Runs every benchmark for every size, printing each result as it is measured. What the elections print is thrown
+    * away. </p>
+    */
+    public void run() throws IOException {
+        workDir.mkdirs();
+        PrintStream console = System.out;
+        console.println(String.format("%-26s %9s %10s %11s %11s %13s %8s %8s", "benchmark", "ballots", "candidates",
+            "ms/op", "min ms/op", "alloc MB/op", "gc/op", "gc ms/op"));
+        ThreadOutput.redirect(OutputStream.nullOutputStream());
+        try {
+            for(int ballots : ballotCounts) {
+                for(int candidates : candidateCounts) {
+                    runSize(ballots, candidates, console);
+                }
+            }
+        } finally {
+            ThreadOutput.restore();
+        }
+    }
+
+    /**
+    * <p> Runs every benchmark for one size of election. </p>
+    * @param  ballots    number of ballots.
+    * @param  candidates number of candidates.
+    * @param  console    PrintStream the results are printed to.
+    */
+    private void runSize(int ballots, int candidates, PrintStream console) throws IOException {
+        File outputDir = new File(workDir, "out");
+        outputDir.mkdirs();
+        HashMap<String, File> files = new HashMap<>();
+        for(String type : TYPES) {
+            File csv = new File(workDir, type + "-" + ballots + "-" + candidates + ".csv");
+            writeElection(csv, type, ballots, candidates, 11);
+            files.put(type, csv);
+        }
+        File binary = new File(workDir, "IR-" + ballots + "-" + candidates + ".ebal");
+        BinaryBallotFile.convert(files.get("IR"), binary);
+        File gzip = new File(workDir, "IR-" + ballots + "-" + candidates + ".csv.gz");
+        try (InputStream in = new FileInputStream(files.get("IR")); OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip), 1 << 16)) {
+            in.transferTo(out);
+        }
+
+        for(String type : TYPES) {
+            File fp = files.get(type);
+            report(console, "parseHeader." + type, ballots, candidates, measure(() -> {
+                clean(outputDir);
+                HeaderProcessor header = new HeaderProcessor(fp, outputDir);
+                return () -> parse(header);
+            }));
+        }
+        String[][] branches = {{"IR-csv", files.get("IR").getPath()}, {"OPL-csv", files.get("OPL").getPath()},
+            {"MPO-csv", files.get("MPO").getPath()}, {"IR-binary", binary.getPath()}, {"IR-gzip", gzip.getPath()}};
+        for(String[] branch : branches) {
+            File fp = new File(branch[1]);
+            report(console, "processFile." + branch[0], ballots, candidates, measure(() -> {
+                clean(outputDir);
+                HeaderProcessor header = new HeaderProcessor(fp, outputDir);
+                BallotReader reader = header.openBallots();
+                return () -> new FileProcessor(header, reader, 1);
+            }));
+        }
+        for(String type : TYPES) {
+            File fp = files.get(type);
+            TimedEvents[] events = new TimedEvents[1];
+            report(console, "runElection." + type, ballots, candidates, measure(() -> {
+                clean(outputDir);
+                VotingSystem votingSystem = new HeaderProcessor(fp, outputDir).parseHeader();
+                ((TieBreaking) votingSystem).setTieBreaker(new TieBreaker(11));
+                events[0] = new TimedEvents();
+                ((Audited) votingSystem).getAudit().setRecorder(events[0]);
+                return votingSystem::runElection;
+            }));
+            if(type.equals("IR")) {
+                console.println(String.format("%-26s %9d %10d %11.3f %11.3f   (%d rounds)", "runElection.IR.round", ballots, candidates,
+                    events[0].meanRoundMillis(), events[0].fastestRoundMillis(), events[0].rounds()));
+                rows.add(new String[] {"runElection.IR.round", "" + ballots, "" + candidates, String.format("%.3f", events[0].meanRoundMillis()),
+                    String.format("%.3f", events[0].fastestRoundMillis()), "", "", ""});
+            }
+        }
+        clean(outputDir);
+    }
+
+    /**
+    * <p> Reads an election file, turning the checked exception into an unchecked one so it can be timed as a Runnable. </p>
+    * @param  header HeaderProcessor of the file.
+    */
+    private static void parse(HeaderProcessor header) {
+        try {
+            // nothing is logged, closing the audit only closes the file it opened
+            ((Audited) header.parseHeader()).getAudit().close();
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+    * <p> Runs the warm-up and measured iterations of one benchmark. </p>
+    * @param  operation Operation to time.
+    * @return double array of the mean ms, fastest ms, allocated MB, collections and collection ms per operation.
+    */
+    private double[] measure(Operation operation) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for(int i = 0; i<warmup; i++) {
+            operation.prepare().run();
+        }
+        long total = 0;
+        long fastest = Long.MAX_VALUE;
+        long allocated = 0;
+        long collections = 0;
+        long collectionMillis = 0;
+        for(int i = 0; i<iterations; i++) {
+            Runnable work = operation.prepare();
+            long[] gcBefore = collections();
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            work.run();
+            long elapsed = System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            long[] gcAfter = collections();
+            collections += gcAfter[0] - gcBefore[0];
+            collectionMillis += gcAfter[1] - gcBefore[1];
+            total += elapsed;
+            fastest = Math.min(fastest, elapsed);
+        }
+        return new double[] {total / 1e6 / iterations, fastest / 1e6, allocated / 1048576.0 / iterations,
+            (double) collections / iterations, (double) collectionMillis / iterations};
+    }
+
+    /**
+    * <p> Adds up the collections every garbage collector has made so far. </p>
+    * @return long array of the number of collections and the milliseconds they took.
+    */
+    private static long[] collections() {
+        long[] total = new long[2];
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total[0] += Math.max(0, gc.getCollectionCount());
+            total[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+    * <p> Prints one result and keeps it for the .csv file. </p>
+    */
+    private void report(PrintStream console, String benchmark, int ballots, int candidates, double[] result) {
+        console.println(String.format("%-26s %9d %10d %11.3f %11.3f %13.3f %8.2f %8.2f", benchmark, ballots, candidates,
+            result[0], result[1], result[2], result[3], result[4]));
+        rows.add(new String[] {benchmark, "" + ballots, "" + candidates, String.format("%.3f", result[0]), String.format("%.3f", result[1]),
+            String.format("%.3f", result[2]), String.format("%.2f", result[3]), String.format("%.2f", result[4])});
+    }
+
+    /**
+    * <p> Writes every result measured so far to a .csv file. </p>
+    * @param  csv File to write, replacing it if it exists.
+    */
+    public void writeCsv(File csv) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(csv)))) {
+            out.println("benchmark,ballots,candidates,ms_per_op,min_ms_per_op,alloc_mb_per_op,gc_per_op,gc_ms_per_op");
+            for(String[] row : rows) {
+                out.println(String.join(",", row));
+            }
+        }
+    }
+
+    /**
+    * <p> Deletes the audit and invalidated ballot files written by the last operation, so they do not grow between
+    * iterations. </p>
+    * @param  outputDir directory the elections write to.
+    */
+    private static void clean(File outputDir) {
+        new File(outputDir, Audit.FILE_NAME).delete();
+        new File(outputDir, InvalidBallotWriter.FILE_NAME).delete();
+    }
+
+    /**
+    * <p> Writes an election file with the ElectionGenerator, with a Zipf exponent of 1, IR ballots ranking anything from
+    * half to all of the candidates and a quarter of the candidates as seats. </p>
+    * @param  fp         File to write.
+    * @param  type       IR, OPL or MPO.
+    * @param  ballots    number of ballots.
+    * @param  candidates number of candidates.
+    * @param  seed       seed of the random ballots, so the same file is written each time.
+    */
+    private static void writeElection(File fp, String type, int ballots, int candidates, long seed) throws IOException {
+        ElectionGenerator generator = new ElectionGenerator();
+        generator.setType(type);
+        generator.setBallots(ballots);
+        generator.setCandidates(candidates);
+        generator.setParties(Math.min(candidates, 5));
+        generator.setSeats(Math.max(1, candidates / 4));
+        generator.setSeed(seed);
+        generator.write(fp);
+    }
+
+    /**
+    * <p> List of audit events that also keeps the time each one was logged, to time the rounds of an IR election. </p>
+    */
+    private static class TimedEvents extends ArrayList<AuditEvent> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<Long> eliminated = new ArrayList<>();
+        private long start = System.nanoTime();
+
+        @Override
+        public boolean add(AuditEvent event) {
+            if(event instanceof AuditEvent.InitialState) {
+                start = System.nanoTime();
+            } else if(event instanceof AuditEvent.CandidateEliminated) {
+                eliminated.add(System.nanoTime());
+            }
+            return super.add(event);
+        }
+
+        int rounds() {
+            return eliminated.size();
+        }
+
+        double meanRoundMillis() {
+            return eliminated.isEmpty() ? 0 : (eliminated.get(eliminated.size() - 1) - start) / 1e6 / eliminated.size();
+        }
+
+        double fastestRoundMillis() {
+            long fastest = Long.MAX_VALUE;
+            long last = start;
+            for(long time : eliminated) {
+                fastest = Math.min(fastest, time - last);
+                last = time;
+            }
+            return eliminated.isEmpty() ? 0 : fastest / 1e6;
+        }
+    }
+
+    /**
+    * <p> Runs the benchmarks. Sizes are given as comma separated lists. </p>
+    * <pre>
+    * java ElectionBenchmark [--ballots 10000,100000] [--candidates 4,16] [--warmup 3] [--iterations 5] [--dir bench] [--csv results.csv]
+    * </pre>
+    */
+    public static void main(String args[]) throws IOException {
+        int[] ballotCounts = {10000, 100000};
+        int[] candidateCounts = {4, 16};
+        int warmup = 3;
+        int iterations = 5;
+        File dir = new File("bench");
+        File csv = null;
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(args[i].equals("--ballots")) {
+                ballotCounts = parseList(args[i + 1]);
+            } else if(args[i].equals("--candidates")) {
+                candidateCounts = parseList(args[i + 1]);
+            } else if(args[i].equals("--warmup")) {
+                warmup = Integer.parseInt(args[i + 1]);
+            } else if(args[i].equals("--iterations")) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else if(args[i].equals("--dir")) {
+                dir = new File(args[i + 1]);
+            } else if(args[i].equals("--csv")) {
+                csv = new File(args[i + 1]);
+            } else {
+                System.out.println("ERROR: Unknown option " + args[i] + ".");
+                return;
+            }
+        }
+        ElectionBenchmark benchmark = new ElectionBenchmark(ballotCounts, candidateCounts, warmup, iterations, dir);
+        benchmark.run();
+        if(csv != null) {
+            benchmark.writeCsv(csv);
+        }
+    }
+
+    /**
+    * <p> Reads a comma separated list of whole numbers. </p>
+    * @param  list String such as 1000,10000.
+    * @return int array of the numbers.
+    */
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] numbers = new int[parts.length];
+        for(int i = 0; i<parts.length; i++) {
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,452 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+* ElectionGenerator writes large IR, OPL and MPO election files with random ballots, in the same layout as the files in
+* testing/, for load testing. The same settings and seed always write the same file.
+*
+* <p> The ballots are streamed to the file one at a time and nothing is kept per ballot, so the memory used depends only on
+* the number of candidates. How many first choices each candidate gets is worked out before any ballot is written: the
+* candidates are put in a random order of popularity and the k-th most popular gets a share of the ballots proportional to
+* 1 / k^s, where s is the Zipf exponent (0 shares the ballots evenly). The ballots are then written in a random order by
+* drawing each first choice in proportion to the first choices each candidate has left. This makes the totals exact, so
+* the leading candidates can be given exactly the same number of first choices to force a tie. </p>
+*
+* <p> The rest of an IR ballot ranks other candidates in a random order that also favours the popular ones. How many
+* candidates a valid IR ballot ranks is at least the half of the candidates the count requires, and is either every
+* candidate, spread evenly up to every candidate, or one more candidate at a time with a fixed chance. A share of IR
+* ballots can be made invalid, half of them ranking too few candidates and half of them giving a rank larger than the
+* number of candidates. OPL and MPO ballots cannot be invalid. </p>
+*/
+public class ElectionGenerator {
+    /**
+     * Characters used for party names. IR and OPL files only keep the first character of a party, so each party is one
+     */
+    private static final String PARTY_NAMES = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Most candidates, so a candidate's ballot index fits in the low bits of its ranking key
+     */
+    private static final int MAX_CANDIDATES = 0xFFFF;
+
+    /**
+     * How many candidates a valid IR ballot ranks
+     */
+    public enum Depth {
+        /** every candidate */
+        FULL,
+        /** any number from the fewest the count requires to every candidate, each as likely */
+        UNIFORM,
+        /** the fewest the count requires, then each further candidate with the chance set by setDepthChance() */
+        GEOMETRIC
+    }
+
+    private String type = "IR";
+    private int ballots = 1000;
+    private int candidates = 4;
+    private int parties = 4;
+    private int seats = 1;
+    private Depth depth = Depth.UNIFORM;
+    private double depthChance = 0.5;
+    private double zipf = 1.0;
+    private int ties = 0;
+    private double invalidRate = 0;
+    private long seed = 1;
+
+    /**
+    * <p> Writes the election file. </p>
+    * @param  fp File to write, replacing it if it exists.
+    * @throws IllegalArgumentException if the settings cannot make a valid election file.
+    */
+    public void write(File fp) throws IOException {
+        check();
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] weight = popularity(random);
+        int invalid = type.equals("IR") ? (int) Math.round(ballots * invalidRate) : 0;
+        int[] firstChoices = firstChoices(weight, ballots - invalid);
+        int threshold = (int) Math.round(0.5 * candidates);
+
+        // a Fenwick tree over the first choices left, so each one is drawn in O(log C)
+        long[] left = new long[candidates + 1];
+        for(int c = 0; c<candidates; c++) {
+            for(int i = c + 1; i <= candidates; i += i & -i) {
+                left[i] += firstChoices[c];
+            }
+        }
+        int top = Integer.highestOneBit(candidates);
+
+        long[] keys = new long[candidates];
+        int[] ranks = new int[candidates];
+        byte[] line = new byte[candidates * 11 + 1];
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fp), BUFFER_SIZE)) {
+            out.write(header().getBytes(StandardCharsets.UTF_8));
+            long validLeft = ballots - invalid;
+            long invalidLeft = invalid;
+            for(int b = 0; b<ballots; b++) {
+                Arrays.fill(ranks, 0);
+                if(random.nextLong(validLeft + invalidLeft) < invalidLeft) {
+                    invalidLeft--;
+                    invalidBallot(random, weight, keys, ranks, threshold);
+                } else {
+                    validLeft--;
+                    int first = draw(left, top, random.nextLong(validLeft + 1));
+                    for(int i = first + 1; i <= candidates; i += i & -i) {
+                        left[i]--;
+                    }
+                    ranks[first] = 1;
+                    if(type.equals("IR")) {
+                        rankAfter(random, weight, keys, ranks, first, rankingDepth(random, threshold));
+                    }
+                }
+                out.write(line, 0, formatBallot(ranks, line));
+            }
+        }
+    }
+
+    /**
+    * <p> Checks that the settings make a valid election file. </p>
+    */
+    private void check() {
+        if(!type.equals("IR") && !type.equals("OPL") && !type.equals("MPO")) {
+            throw new IllegalArgumentException("Type of election must be IR, OPL or MPO, not " + type);
+        }
+        if(candidates < 1 || candidates > MAX_CANDIDATES || ballots < 0) {
+            throw new IllegalArgumentException("An election needs from 1 to " + MAX_CANDIDATES + " candidates and no fewer than 0 ballots");
+        }
+        if(parties < 1 || parties > Math.min(candidates, PARTY_NAMES.length())) {
+            throw new IllegalArgumentException("Number of parties must be from 1 to " + Math.min(candidates, PARTY_NAMES.length()));
+        }
+        if(!type.equals("IR") && (seats < 1 || seats > candidates)) {
+            throw new IllegalArgumentException("Number of seats must be from 1 to the number of candidates");
+        }
+        if(ties == 1 || ties < 0 || ties >= candidates && ties > 0) {
+            throw new IllegalArgumentException("Number of tied candidates must be 0, or from 2 to one less than the number of candidates");
+        }
+        if(invalidRate < 0 || invalidRate > 1 || depthChance < 0 || depthChance >= 1 || zipf < 0) {
+            throw new IllegalArgumentException("Invalid rate must be from 0 to 1, depth chance from 0 to below 1 and the Zipf exponent at least 0");
+        }
+    }
+
+    /**
+    * <p> Puts the candidates in a random order of popularity and works out the Zipf weight of each. </p>
+    * @param  random SplittableRandom of the file.
+    * @return double array of the weight of each candidate, by ballot index.
+    */
+    private double[] popularity(SplittableRandom random) {
+        int[] order = new int[candidates];
+        for(int i = 0; i<candidates; i++) {
+            order[i] = i;
+        }
+        for(int i = candidates - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        double[] weight = new double[candidates];
+        for(int k = 0; k<candidates; k++) {
+            weight[order[k]] = Math.max(Double.MIN_NORMAL, 1 / Math.pow(k + 1, zipf));
+        }
+        return weight;
+    }
+
+    /**
+    * <p> Shares the valid ballots out as first choices in proportion to the weights, giving the ballots left over by rounding
+    * down to the largest remainders, and then gives the leading candidates equal shares if a tie was asked for. Anything left
+    * over from evening out the tie goes to the next candidate. </p>
+    * @param  weight Zipf weight of each candidate.
+    * @param  valid  number of valid ballots.
+    * @return int array of the first choices of each candidate.
+    */
+    private int[] firstChoices(double[] weight, int valid) {
+        double total = 0;
+        for(double w : weight) {
+            total += w;
+        }
+        int[] counts = new int[candidates];
+        double[] remainder = new double[candidates];
+        long given = 0;
+        for(int c = 0; c<candidates; c++) {
+            double share = valid * weight[c] / total;
+            counts[c] = (int) share;
+            remainder[c] = share - counts[c];
+            given += counts[c];
+        }
+        Integer[] byRemainder = new Integer[candidates];
+        for(int c = 0; c<candidates; c++) {
+            byRemainder[c] = c;
+        }
+        Arrays.sort(byRemainder, (a, b) -> remainder[a] != remainder[b] ? Double.compare(remainder[b], remainder[a]) : Integer.compare(a, b));
+        for(int i = 0; given < valid; i++, given++) {
+            counts[byRemainder[i]]++;
+        }
+        if(ties > 0) {
+            Integer[] byWeight = new Integer[candidates];
+            for(int c = 0; c<candidates; c++) {
+                byWeight[c] = c;
+            }
+            Arrays.sort(byWeight, (a, b) -> weight[a] != weight[b] ? Double.compare(weight[b], weight[a]) : Integer.compare(a, b));
+            long tied = 0;
+            for(int i = 0; i<ties; i++) {
+                tied += counts[byWeight[i]];
+            }
+            for(int i = 0; i<ties; i++) {
+                counts[byWeight[i]] = (int) (tied / ties);
+            }
+            counts[byWeight[ties]] += (int) (tied % ties);
+        }
+        return counts;
+    }
+
+    /**
+    * <p> Finds the candidate a draw from the Fenwick tree of first choices left falls on. </p>
+    * @param  tree  Fenwick tree of the first choices left.
+    * @param  top   highest power of two no larger than the number of candidates.
+    * @param  value draw from 0 to one less than the first choices left.
+    * @return int ballot index of the candidate.
+    */
+    private int draw(long[] tree, int top, long value) {
+        int at = 0;
+        for(int step = top; step > 0; step >>= 1) {
+            if(at + step <= candidates && tree[at + step] <= value) {
+                at += step;
+                value -= tree[at];
+            }
+        }
+        return at;
+    }
+
+    /**
+    * <p> Works out how many candidates a valid IR ballot ranks. </p>
+    * @param  random    SplittableRandom of the file.
+    * @param  threshold fewest candidates a valid ballot ranks.
+    * @return int number of candidates ranked.
+    */
+    private int rankingDepth(SplittableRandom random, int threshold) {
+        int fewest = Math.max(1, threshold);
+        switch(depth) {
+            case FULL:
+                return candidates;
+            case UNIFORM:
+                return fewest + random.nextInt(candidates - fewest + 1);
+            default:
+                int ranked = fewest;
+                while(ranked < candidates && random.nextDouble() < depthChance) {
+                    ranked++;
+                }
+                return ranked;
+        }
+    }
+
+    /**
+    * <p> Ranks more candidates after the first choice, in a random order that favours the popular candidates. Each candidate
+    * gets the key -ln(u) / weight for a uniform u and the smallest keys are ranked first, which picks each next candidate in
+    * proportion to its weight among the candidates not yet ranked. </p>
+    * @param  random SplittableRandom of the file.
+    * @param  weight Zipf weight of each candidate.
+    * @param  keys   array with one entry per candidate, reused between ballots.
+    * @param  ranks  rank given each candidate, 0 if unranked.
+    * @param  first  ballot index of the first choice, or -1 to rank from the start.
+    * @param  ranked number of candidates the ballot ranks, counting the first choice.
+    */
+    private void rankAfter(SplittableRandom random, double[] weight, long[] keys, int[] ranks, int first, int ranked) {
+        int n = 0;
+        for(int c = 0; c<candidates; c++) {
+            if(c != first) {
+                double key = (0.0 - Math.log(1 - random.nextDouble())) / weight[c];
+                // positive doubles sort in the same order as their bits, and the low bits make room for the candidate
+                keys[n++] = (Double.doubleToLongBits(key) & ~0xFFFFL) | c;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int rank = first < 0 ? 1 : 2;
+        for(int i = 0; rank <= ranked && i<n; i++, rank++) {
+            ranks[(int) (keys[i] & 0xFFFFL)] = rank;
+        }
+    }
+
+    /**
+    * <p> Fills in an invalid IR ballot, which ranks too few candidates or, when every ballot ranking at least one candidate
+    * is valid, gives a rank larger than the number of candidates. </p>
+    * @param  random    SplittableRandom of the file.
+    * @param  weight    Zipf weight of each candidate.
+    * @param  keys      array with one entry per candidate, reused between ballots.
+    * @param  ranks     rank given each candidate.
+    * @param  threshold fewest candidates a valid ballot ranks.
+    */
+    private void invalidBallot(SplittableRandom random, double[] weight, long[] keys, int[] ranks, int threshold) {
+        if(threshold > 1 && random.nextBoolean()) {
+            rankAfter(random, weight, keys, ranks, -1, 1 + random.nextInt(threshold - 1));
+            return;
+        }
+        rankAfter(random, weight, keys, ranks, -1, rankingDepth(random, threshold));
+        ranks[random.nextInt(candidates)] = candidates + 1;
+    }
+
+    /**
+    * <p> Writes the header lines of the file, in the layout HeaderProcessor reads. </p>
+    * @return String of the header.
+    */
+    private String header() {
+        StringBuilder header = new StringBuilder();
+        header.append(type).append('\n');
+        if(type.equals("MPO")) {
+            header.append(seats).append('\n');
+        }
+        header.append(candidates).append('\n');
+        for(int c = 0; c<candidates; c++) {
+            if(c > 0) {
+                header.append(", ");
+            }
+            char party = PARTY_NAMES.charAt(c % parties);
+            if(type.equals("MPO")) {
+                header.append("[C").append(c + 1).append(", ").append(party).append(']');
+            } else {
+                header.append('C').append(c + 1).append(" (").append(party).append(')');
+            }
+        }
+        header.append('\n');
+        if(type.equals("OPL")) {
+            header.append(seats).append('\n');
+        }
+        header.append(ballots).append('\n');
+        return header.toString();
+    }
+
+    /**
+    * <p> Writes the fields of one ballot into a line of bytes, a rank or nothing for each candidate. </p>
+    * @param  ranks rank given each candidate, 0 if unranked.
+    * @param  line  array to write the line into.
+    * @return int number of bytes of the line, with its newline.
+    */
+    private static int formatBallot(int[] ranks, byte[] line) {
+        int length = 0;
+        for(int c = 0; c<ranks.length; c++) {
+            if(c > 0) {
+                line[length++] = ',';
+            }
+            int rank = ranks[c];
+            if(rank > 0) {
+                int start = length;
+                for(; rank > 0; rank /= 10) {
+                    line[length++] = (byte) ('0' + rank % 10);
+                }
+                for(int i = start, j = length - 1; i < j; i++, j--) {
+                    byte swap = line[i];
+                    line[i] = line[j];
+                    line[j] = swap;
+                }
+            }
+        }
+        line[length++] = '\n';
+        return length;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setBallots(int ballots) {
+        this.ballots = ballots;
+    }
+
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    public void setParties(int parties) {
+        this.parties = parties;
+    }
+
+    public void setSeats(int seats) {
+        this.seats = seats;
+    }
+
+    public void setDepth(Depth depth) {
+        this.depth = depth;
+    }
+
+    /**
+    * <p> Sets the chance a GEOMETRIC ballot ranks one more candidate. </p>
+    * @param  depthChance chance from 0 to below 1.
+    */
+    public void setDepthChance(double depthChance) {
+        this.depthChance = depthChance;
+    }
+
+    /**
+    * <p> Sets how strongly the ballots favour the popular candidates. </p>
+    * @param  zipf Zipf exponent, 0 for no favourites.
+    */
+    public void setZipf(double zipf) {
+        this.zipf = zipf;
+    }
+
+    /**
+    * <p> Sets how many of the most popular candidates get exactly the same number of first choices. </p>
+    * @param  ties number of tied candidates, 0 for no forced tie.
+    */
+    public void setTies(int ties) {
+        this.ties = ties;
+    }
+
+    /**
+    * <p> Sets the share of IR ballots that are invalid. </p>
+    * @param  invalidRate share from 0 to 1.
+    */
+    public void setInvalidRate(double invalidRate) {
+        this.invalidRate = invalidRate;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+    * <p> Writes an election file from the settings given as arguments. </p>
+    * <pre>
+    * java ElectionGenerator OUTPUT [--type IR|OPL|MPO] [--ballots N] [--candidates N] [--parties N] [--seats N]
+    *     [--depth full|uniform|geometric] [--depth-chance P] [--zipf S] [--ties N] [--invalid-rate P] [--seed N]
+    * </pre>
+    */
+    public static void main(String args[]) throws IOException {
+        if(args.length < 1 || args.length % 2 == 0) {
+            System.out.println("Usage: java ElectionGenerator <election.csv> [--type IR|OPL|MPO] [--ballots N] [--candidates N] [--parties N] [--seats N]"
+                + " [--depth full|uniform|geometric] [--depth-chance P] [--zipf S] [--ties N] [--invalid-rate P] [--seed N]");
+            return;
+        }
+        ElectionGenerator generator = new ElectionGenerator();
+        boolean partiesSet = false;
+        try {
+            for(int i = 1; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--type": generator.setType(value.toUpperCase()); break;
+                    case "--ballots": generator.setBallots(Integer.parseInt(value)); break;
+                    case "--candidates": generator.setCandidates(Integer.parseInt(value)); break;
+                    case "--parties": generator.setParties(Integer.parseInt(value)); partiesSet = true; break;
+                    case "--seats": generator.setSeats(Integer.parseInt(value)); break;
+                    case "--depth": generator.setDepth(Depth.valueOf(value.toUpperCase())); break;
+                    case "--depth-chance": generator.setDepthChance(Double.parseDouble(value)); break;
+                    case "--zipf": generator.setZipf(Double.parseDouble(value)); break;
+                    case "--ties": generator.setTies(Integer.parseInt(value)); break;
+                    case "--invalid-rate": generator.setInvalidRate(Double.parseDouble(value)); break;
+                    case "--seed": generator.setSeed(Long.parseLong(value)); break;
+                    default:
+                        System.out.println("ERROR: Unknown option " + args[i] + ".");
+                        return;
+                }
+            }
+            if(!partiesSet) {
+                generator.setParties(Math.min(generator.candidates, 4));
+            }
+            generator.write(new File(args[0]));
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            return;
+        }
+        System.out.println("Wrote " + generator.ballots + " " + generator.type + " ballots to " + args[0]);
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+* ElectionMetrics times the phases of counting one election: reading the header, reading the ballots, each IR elimination
+* round and the redistribution of its ballots, allocating the seats and writing the audit file. It is handed along with the
+* election from the HeaderProcessor to the FileProcessor, the VotingSystem and its Audit, the same way the output directory is.
+*
+* <p> Every phase and round is also a JDK Flight Recorder event, election.Phase and election.Round, so a recording started
+* with -XX:StartFlightRecording shows where a count spends its time. The events are only created if the recorder had been
+* started when the election began, and are dropped by the JVM before their fields are filled in unless a recording enables
+* them. </p>
+*
+* <p> The totals are only kept when the summary is turned on with --metrics, and are then written as one JSON object to
+* metrics.json once the election is counted. Nothing is timed per ballot, so a measured election costs a few clock reads per
+* phase and per round, and an election that is neither summarised nor recorded reads no clock at all. When the files of one
+* election are read at the same time, the time reading ballots is the sum of the time spent on each file. </p>
+*/
+public class ElectionMetrics {
+    /**
+     * Name of the metrics summary in the directory the election writes to
+     */
+    public static final String FILE_NAME = "metrics.json";
+
+    /**
+     * Part of counting an election that is timed
+     */
+    public enum Phase {
+        /** opening the election file and reading its header */
+        HEADER("header"),
+        /** reading and tallying the ballots after the header */
+        BALLOTS("ballots"),
+        /** running the voting system, from the initial state to the audit file being closed */
+        COUNT("count"),
+        /** the IR elimination rounds, added up */
+        ROUNDS("rounds"),
+        /** moving the ballots of eliminated IR candidates to their next choices, added up over the rounds */
+        REDISTRIBUTION("redistribution"),
+        /** finding the winner or awarding the seats */
+        SEATS("seats"),
+        /** formatting and writing the audit files, on the audit writer thread */
+        AUDIT("audit");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Flight Recorder event for one phase of an election
+     */
+    @Name("election.Phase")
+    @Label("Election Phase")
+    @Category("Election")
+    @Description("One phase of counting an election")
+    static class PhaseEvent extends Event {
+        @Label("Election")
+        String election;
+        @Label("Phase")
+        String phase;
+        @Label("Ballots")
+        long ballots;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Flight Recorder event for one IR elimination round
+     */
+    @Name("election.Round")
+    @Label("Elimination Round")
+    @Category("Election")
+    @Description("One round of eliminating IR candidates and moving their ballots")
+    static class RoundEvent extends Event {
+        @Label("Election")
+        String election;
+        @Label("Round")
+        int round;
+        @Label("Eliminated")
+        String eliminated;
+        @Label("Ballots Transferred")
+        long transferred;
+        @Label("Ballots Exhausted")
+        long exhausted;
+        @Label("Redistribution")
+        @Timespan(Timespan.NANOSECONDS)
+        long redistribution;
+    }
+
+    /**
+     * A phase or round being timed. Its Flight Recorder event is only created when the recorder has been started, since loading
+     * the first event class is what sets up the recorder and takes a large part of a second
+     */
+    static class Timer {
+        private final Phase phase;
+        private final long startNanos;
+        private PhaseEvent phaseEvent;
+        private RoundEvent roundEvent;
+
+        Timer(Phase phase, long startNanos) {
+            this.phase = phase;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * Timer handed out when there is nothing to record, so an election that is not measured reads no clock
+     */
+    private static final Timer IDLE = new Timer(null, 0);
+
+    /**
+     * What the summary keeps of one elimination round
+     */
+    private static class Round {
+        private final String eliminated;
+        private final long transferred;
+        private final long exhausted;
+        private final long nanos;
+        private final long redistributionNanos;
+
+        Round(String eliminated, long transferred, long exhausted, long nanos, long redistributionNanos) {
+            this.eliminated = eliminated;
+            this.transferred = transferred;
+            this.exhausted = exhausted;
+            this.nanos = nanos;
+            this.redistributionNanos = redistributionNanos;
+        }
+    }
+
+    private final String election;
+    private final boolean summary;
+    private final boolean events;
+    private String votingSystem = "";
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private long ballots;
+    private long auditBytes;
+    private int rounds;
+    private final List<Round> roundTotals = new ArrayList<>();
+
+    /**
+    * <p> Creates the metrics of an election, emitting Flight Recorder events for it if the recorder has been started. </p>
+    * @param  election name of the election, its file path.
+    * @param  summary  true to keep the totals for the summary written by write().
+    */
+    public ElectionMetrics(String election, boolean summary) {
+        this(election, summary, FlightRecorder.isInitialized());
+    }
+
+    private ElectionMetrics(String election, boolean summary, boolean events) {
+        this.election = election;
+        this.summary = summary;
+        this.events = events;
+    }
+
+    /**
+    * <p> Creates metrics that record nothing at all, for counts that are not part of the election, such as tie trials. </p>
+    * @return ElectionMetrics that neither keeps totals nor emits events.
+    */
+    public static ElectionMetrics none() {
+        return new ElectionMetrics("", false, false);
+    }
+
+    /**
+    * <p> Starts timing a phase. </p>
+    * @param  phase the phase starting.
+    * @return Timer to hand to end() once the phase is over.
+    */
+    Timer begin(Phase phase) {
+        if(!summary && !events) {
+            return IDLE;
+        }
+        Timer timer = new Timer(phase, System.nanoTime());
+        if(events) {
+            timer.phaseEvent = new PhaseEvent();
+            timer.phaseEvent.begin();
+        }
+        return timer;
+    }
+
+    /**
+    * <p> Ends a phase. </p>
+    * @param  timer Timer returned by begin().
+    */
+    void end(Timer timer) {
+        end(timer, 0, 0);
+    }
+
+    /**
+    * <p> Ends a phase that read ballots or wrote bytes, adding them to the totals of the election. </p>
+    * @param  timer   Timer returned by begin().
+    * @param  ballots number of ballots read in the phase.
+    * @param  bytes   number of bytes written in the phase.
+    */
+    void end(Timer timer, long ballots, long bytes) {
+        if(timer == IDLE) {
+            return;
+        }
+        PhaseEvent event = timer.phaseEvent;
+        if(event != null) {
+            event.end();
+            if(event.shouldCommit()) {
+                event.election = election;
+                event.phase = timer.phase.getLabel();
+                event.ballots = ballots;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+        if(summary) {
+            long nanos = System.nanoTime() - timer.startNanos;
+            synchronized(this) {
+                phaseNanos[timer.phase.ordinal()] += nanos;
+                this.ballots += ballots;
+                this.auditBytes += bytes;
+            }
+        }
+    }
+
+    /**
+    * <p> Reads the clock to time part of a phase or round, such as moving the ballots of a round. </p>
+    * @return long nanoseconds from System.nanoTime(), or 0 if there is nothing to record.
+    */
+    long clock() {
+        return summary || events ? System.nanoTime() : 0;
+    }
+
+    /**
+    * <p> Starts timing an IR elimination round. </p>
+    * @return Timer to hand to endRound() once the round is over.
+    */
+    Timer beginRound() {
+        if(!summary && !events) {
+            return IDLE;
+        }
+        Timer timer = new Timer(Phase.ROUNDS, System.nanoTime());
+        if(events) {
+            timer.roundEvent = new RoundEvent();
+            timer.roundEvent.begin();
+        }
+        return timer;
+    }
+
+    /**
+    * <p> Ends an IR elimination round. </p>
+    * @param  timer               Timer returned by beginRound().
+    * @param  eliminated          candidates eliminated in the round.
+    * @param  transferred         ballots moved to a candidate still running.
+    * @param  exhausted           ballots left with no candidate still running.
+    * @param  redistributionNanos nanoseconds spent moving the ballots.
+    */
+    void endRound(Timer timer, List<? extends Candidate> eliminated, long transferred, long exhausted, long redistributionNanos) {
+        if(timer == IDLE) {
+            return;
+        }
+        int round;
+        synchronized(this) {
+            round = ++rounds;
+        }
+        String names = eliminated.size() == 1 ? eliminated.get(0).getName() : names(eliminated);
+        RoundEvent event = timer.roundEvent;
+        if(event != null) {
+            event.end();
+            if(event.shouldCommit()) {
+                event.election = election;
+                event.round = round;
+                event.eliminated = names;
+                event.transferred = transferred;
+                event.exhausted = exhausted;
+                event.redistribution = redistributionNanos;
+                event.commit();
+            }
+        }
+        if(summary) {
+            long nanos = System.nanoTime() - timer.startNanos;
+            synchronized(this) {
+                phaseNanos[Phase.ROUNDS.ordinal()] += nanos;
+                phaseNanos[Phase.REDISTRIBUTION.ordinal()] += redistributionNanos;
+                roundTotals.add(new Round(names, transferred, exhausted, nanos, redistributionNanos));
+            }
+        }
+    }
+
+    /**
+    * <p> Joins the names of candidates eliminated together. </p>
+    * @param  eliminated candidates eliminated in one round.
+    * @return String of their names separated by a comma and a space.
+    */
+    private static String names(List<? extends Candidate> eliminated) {
+        StringBuilder names = new StringBuilder();
+        for(Candidate c : eliminated) {
+            if(names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(c.getName());
+        }
+        return names.toString();
+    }
+
+    /**
+    * <p> Sets the type of election, once its header has been read. </p>
+    * @param  votingSystem String of IR, OPL or MPO.
+    */
+    public synchronized void setVotingSystem(String votingSystem) {
+        this.votingSystem = votingSystem;
+    }
+
+    /**
+    * <p> Checks if the totals are kept for the summary. </p>
+    * @return true if --metrics was given.
+    */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    /**
+    * <p> Getter for the time spent in a phase. </p>
+    * @param  phase the phase.
+    * @return long nanoseconds spent in the phase, 0 if the summary is not kept.
+    */
+    public synchronized long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+    * <p> Getter for how fast the ballots were read. </p>
+    * @return double ballots read per second, 0 if none were timed.
+    */
+    public synchronized double getBallotsPerSecond() {
+        long nanos = phaseNanos[Phase.BALLOTS.ordinal()];
+        return nanos == 0 ? 0 : ballots * 1e9 / nanos;
+    }
+
+    public synchronized long getAuditBytes() {
+        return auditBytes;
+    }
+
+    public synchronized int getRounds() {
+        return rounds;
+    }
+
+    /**
+    * <p> Writes the summary as one JSON object. </p>
+    * @return String of JSON.
+    */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"election\":");
+        AuditEvent.quote(json, election);
+        json.append(",\"voting\":");
+        AuditEvent.quote(json, votingSystem);
+        json.append(",\"ballots\":").append(ballots);
+        json.append(",\"ballots_per_second\":").append(Math.round(getBallotsPerSecond()));
+        json.append(",\"phases_ms\":{");
+        for(Phase phase : Phase.values()) {
+            if(phase.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(phase.getLabel()).append("\":").append(millis(phaseNanos[phase.ordinal()]));
+        }
+        json.append("},\"audit_bytes\":").append(auditBytes);
+        json.append(",\"rounds\":[");
+        for(int i = 0; i<roundTotals.size(); i++) {
+            Round round = roundTotals.get(i);
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("{\"round\":").append(i + 1).append(",\"eliminated\":");
+            AuditEvent.quote(json, round.eliminated);
+            json.append(",\"transferred\":").append(round.transferred);
+            json.append(",\"exhausted\":").append(round.exhausted);
+            json.append(",\"ms\":").append(millis(round.nanos));
+            json.append(",\"redistribution_ms\":").append(millis(round.redistributionNanos)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+    * <p> Writes the summary to a file, replacing any summary already there. </p>
+    * @param  metricsFile File the summary is written to.
+    */
+    public void write(File metricsFile) {
+        try (OutputStream out = new FileOutputStream(metricsFile)) {
+            out.write((toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write metrics file.");
+        }
+    }
+
+    /**
+    * <p> Converts nanoseconds to milliseconds with three decimal places. </p>
+    * @param  nanos nanoseconds.
+    * @return double milliseconds.
+    */
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ElectionOptions holds the choices made on the command line that change how an Election is counted. The defaults count
+ * every election the way it has always been counted.
+ */
+public class ElectionOptions {
+    /**
+     * Name of the JSON lines audit file written alongside auditFile.txt by --audit-json
+     */
+    public static final String AUDIT_JSON = "auditFile.jsonl";
+    /**
+     * Seconds between polls of a watched election file when --watch is given without a number
+     */
+    public static final int DEFAULT_WATCH_SECONDS = 5;
+
+    /**
+     * True to eliminate every IR candidate that can no longer win in one round
+     */
+    private boolean batchElimination;
+    /**
+     * Method used to apportion OPL seats between parties, null for the default Hare quota with largest remainder
+     */
+    private ApportionmentMethod apportionmentMethod;
+    /**
+     * Seed for breaking ties at random, null to pick a new one each run
+     */
+    private Long seed;
+    /**
+     * Number of times to run the tie-dependent part of the count after the election, 0 to not simulate
+     */
+    private int simulations;
+    /**
+     * How much detail the audit file records
+     */
+    private AuditEvent.Level auditLevel = AuditEvent.Level.DETAIL;
+    /**
+     * File each audit event is also written to as a line of JSON, null for none
+     */
+    private File auditJson;
+    /**
+     * Directory the audit and invalidated ballot files are written to, null for the working directory
+     */
+    private File outputDir;
+    /**
+     * True to count every election in the directory given as a separate election, see ElectionBatch
+     */
+    private boolean batch;
+    /**
+     * Most elections of a batch counted at once, 0 for one per available processor
+     */
+    private int threads;
+    /**
+     * Port to answer requests to count elections on, see TabulationService, null to count the one election given
+     */
+    private Integer servePort;
+    /**
+     * Longest election file in bytes that can be sent to the TabulationService, null for its default
+     */
+    private Long maxUpload;
+    /**
+     * Seconds between polls of an election file that is still being appended to, see ElectionWatcher, null to count the file
+     * once
+     */
+    private Integer watchSeconds;
+    /**
+     * True to write a summary of the time spent in each phase of the count to metrics.json, see ElectionMetrics
+     */
+    private boolean metrics;
+    /**
+     * Error for each argument that could not be read by the parse() that made these options
+     */
+    private List<String> errors = new ArrayList<>();
+
+    public ElectionOptions() {
+    }
+
+    /**
+     * <p>Copies another set of options, so each election of a batch can be given its own output directory.</p>
+     * @param other ElectionOptions to copy
+     */
+    public ElectionOptions(ElectionOptions other) {
+        this.batchElimination = other.batchElimination;
+        this.apportionmentMethod = other.apportionmentMethod;
+        this.seed = other.seed;
+        this.simulations = other.simulations;
+        this.auditLevel = other.auditLevel;
+        this.auditJson = other.auditJson;
+        this.outputDir = other.outputDir;
+        this.batch = other.batch;
+        this.threads = other.threads;
+        this.servePort = other.servePort;
+        this.maxUpload = other.maxUpload;
+        this.watchSeconds = other.watchSeconds;
+        this.metrics = other.metrics;
+    }
+
+    /**
+     * <p>Reads the options out of the command line arguments, printing an error for any it does not recognise.</p>
+     * @param args command line arguments given to main
+     * @return ElectionOptions with every recognised option set
+     */
+    public static ElectionOptions parse(String[] args) {
+        ElectionOptions options = parse(args, new ElectionOptions());
+        for(String error : options.getErrors()) {
+            System.out.println(error);
+        }
+        return options;
+    }
+
+    /**
+     * <p>Reads options out of arguments on top of a set of options already chosen, which are left as they are. An option
+     * whose value cannot be read keeps the value it had, and the error is kept in getErrors() instead of being printed.</p>
+     * @param args arguments in the same form as the command line
+     * @param defaults ElectionOptions to start from
+     * @return a copy of defaults with every recognised option in args set
+     */
+    public static ElectionOptions parse(String[] args, ElectionOptions defaults) {
+        ElectionOptions options = new ElectionOptions(defaults);
+        for(int i = 0; i<args.length; i++) {
+            if(args[i].equals("--batch-eliminate")) {
+                options.setBatchElimination(true);
+            } else if(args[i].equals("--apportionment") && i + 1 < args.length) {
+                ApportionmentMethod method = ApportionmentMethod.forName(args[++i]);
+                if(method == null) {
+                    options.errors.add("ERROR: Unknown apportionment method " + args[i] + ", expected hare, dhondt or sainte-lague.");
+                } else {
+                    options.setApportionmentMethod(method);
+                }
+            } else if(args[i].equals("--seed") && i + 1 < args.length) {
+                try {
+                    options.setSeed(Long.parseLong(args[++i]));
+                } catch (NumberFormatException e) {
+                    options.errors.add("ERROR: Seed " + args[i] + " is not a whole number.");
+                }
+            } else if(args[i].equals("--simulate") && i + 1 < args.length) {
+                try {
+                    options.setSimulations(Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    options.errors.add("ERROR: Number of simulations " + args[i] + " is not a whole number.");
+                }
+            } else if(args[i].equals("--audit-level") && i + 1 < args.length) {
+                try {
+                    options.setAuditLevel(AuditEvent.Level.valueOf(args[++i].toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    options.errors.add("ERROR: Unknown audit level " + args[i] + ", expected summary or detail.");
+                }
+            } else if(args[i].equals("--audit-json")) {
+                options.setAuditJson(new File(AUDIT_JSON));
+            } else if(args[i].equals("--output-dir") && i + 1 < args.length) {
+                options.setOutputDir(new File(args[++i]));
+            } else if(args[i].equals("--metrics")) {
+                options.setMetrics(true);
+            } else if(args[i].equals("--batch")) {
+                options.setBatch(true);
+            } else if(args[i].equals("--serve") && i + 1 < args.length) {
+                try {
+                    options.setServePort(Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    options.errors.add("ERROR: Port " + args[i] + " is not a whole number.");
+                }
+            } else if(args[i].equals("--max-upload") && i + 1 < args.length) {
+                try {
+                    options.setMaxUpload(Long.parseLong(args[++i]));
+                } catch (NumberFormatException e) {
+                    options.errors.add("ERROR: Largest upload " + args[i] + " is not a whole number of bytes.");
+                }
+            } else if(args[i].equals("--watch")) {
+                options.setWatchSeconds(DEFAULT_WATCH_SECONDS);
+                if(i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    try {
+                        int seconds = Integer.parseInt(args[++i]);
+                        if(seconds < 1) {
+                            options.errors.add("ERROR: Watch interval " + args[i] + " must be at least one second.");
+                        } else {
+                            options.setWatchSeconds(seconds);
+                        }
+                    } catch (NumberFormatException e) {
+                        options.errors.add("ERROR: Watch interval " + args[i] + " is not a whole number of seconds.");
+                    }
+                }
+            } else if(args[i].equals("--threads") && i + 1 < args.length) {
+                try {
+                    options.setThreads(Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    options.errors.add("ERROR: Number of threads " + args[i] + " is not a whole number.");
+                }
+            } else {
+                options.errors.add("ERROR: Unknown option " + args[i] + ".");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * <p>Sets the options on a voting system, before it is run. Options for other types of election are ignored.</p>
+     * @param votingSystem the voting system the election will be counted with
+     */
+    public void apply(VotingSystem votingSystem) {
+        if(votingSystem instanceof IRVotingSystem) {
+            ((IRVotingSystem) votingSystem).setBatchElimination(batchElimination);
+        }
+        if(votingSystem instanceof OPLVotingSystem) {
+            ((OPLVotingSystem) votingSystem).setApportionmentMethod(apportionmentMethod);
+        }
+        if(votingSystem instanceof TieBreaking && seed != null) {
+            ((TieBreaking) votingSystem).setTieBreaker(new TieBreaker(seed));
+        }
+        if(votingSystem instanceof Audited) {
+            Audit audit = ((Audited) votingSystem).getAudit();
+            audit.setLevel(auditLevel);
+            if(auditJson != null) {
+                audit.openJson(auditJson.isAbsolute() ? auditJson : new File(outputDir, auditJson.getPath()));
+            }
+        }
+    }
+
+    public boolean getBatchElimination() {
+        return batchElimination;
+    }
+
+    public void setBatchElimination(boolean batchElimination) {
+        this.batchElimination = batchElimination;
+    }
+
+    public ApportionmentMethod getApportionmentMethod() {
+        return apportionmentMethod;
+    }
+
+    public void setApportionmentMethod(ApportionmentMethod apportionmentMethod) {
+        this.apportionmentMethod = apportionmentMethod;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public int getSimulations() {
+        return simulations;
+    }
+
+    public void setSimulations(int simulations) {
+        this.simulations = simulations;
+    }
+
+    public AuditEvent.Level getAuditLevel() {
+        return auditLevel;
+    }
+
+    public void setAuditLevel(AuditEvent.Level auditLevel) {
+        this.auditLevel = auditLevel;
+    }
+
+    public File getAuditJson() {
+        return auditJson;
+    }
+
+    public void setAuditJson(File auditJson) {
+        this.auditJson = auditJson;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public boolean getBatch() {
+        return batch;
+    }
+
+    public void setBatch(boolean batch) {
+        this.batch = batch;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public Integer getServePort() {
+        return servePort;
+    }
+
+    public void setServePort(Integer servePort) {
+        this.servePort = servePort;
+    }
+
+    public Long getMaxUpload() {
+        return maxUpload;
+    }
+
+    public void setMaxUpload(Long maxUpload) {
+        this.maxUpload = maxUpload;
+    }
+
+    public Integer getWatchSeconds() {
+        return watchSeconds;
+    }
+
+    public void setWatchSeconds(Integer watchSeconds) {
+        this.watchSeconds = watchSeconds;
+    }
+
+    public boolean getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * <p>Getter for the arguments the parse() that made these options could not read.</p>
+     * @return List with an error message for each, empty if every argument was read
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* ElectionResult is what a TabulationService returns for one election, in place of the results the VotingSystem prints. It
+* holds the winners, the final totals of every candidate, the audit events of each round and how long the election took to
+* read and to count. Once created it is never changed, so it can be handed to any thread.
+*/
+public class ElectionResult {
+    private final File election;
+    private final String votingSystem;
+    private final int numBallots;
+    private final String[] winners;
+    private final String[] names;
+    private final String[] parties;
+    private final int[] ballots;
+    private final List<AuditEvent> events;
+    private final Long tieSeed;
+    private final String output;
+    private final long parseNanos;
+    private final long countNanos;
+    private final String error;
+    private final ElectionMetrics metrics;
+
+    /**
+    * <p> Creates the result of an election that has been run. </p>
+    * @param  election     File of the election, or a directory of files making up one election.
+    * @param  votingSystem the voting system the election was counted with.
+    * @param  events       audit events logged while the election was counted.
+    * @param  output       what the election printed.
+    * @param  parseNanos   nanoseconds taken to read the election file.
+    * @param  countNanos   nanoseconds taken to count the election.
+    */
+    public ElectionResult(File election, VotingSystem votingSystem, List<AuditEvent> events, String output, long parseNanos, long countNanos) {
+        this(election, votingSystem, events, output, parseNanos, countNanos, null);
+    }
+
+    /**
+    * <p> Creates the result of an election that has been run, with the time spent in each phase of the count. </p>
+    * @param  election     File of the election, or a directory of files making up one election.
+    * @param  votingSystem the voting system the election was counted with.
+    * @param  events       audit events logged while the election was counted.
+    * @param  output       what the election printed.
+    * @param  parseNanos   nanoseconds taken to read the election file.
+    * @param  countNanos   nanoseconds taken to count the election.
+    * @param  metrics      ElectionMetrics the election was timed with, or null to leave them out.
+    */
+    public ElectionResult(File election, VotingSystem votingSystem, List<AuditEvent> events, String output, long parseNanos, long countNanos, ElectionMetrics metrics) {
+        this.election = election;
+        this.votingSystem = votingSystem.getClass().getName().replace("VotingSystem", "");
+        this.numBallots = votingSystem.getNumberOfBallots();
+        this.winners = winnersOf(votingSystem);
+        List<Candidate> candidates = votingSystem.getCandidates();
+        this.names = new String[candidates.size()];
+        this.parties = new String[candidates.size()];
+        this.ballots = new int[candidates.size()];
+        for(int i = 0; i<candidates.size(); i++) {
+            Candidate c = candidates.get(i);
+            names[i] = c.getName();
+            parties[i] = c.getParty();
+            ballots[i] = c.getBallotCount();
+        }
+        this.events = Collections.unmodifiableList(new ArrayList<>(events));
+        TieBreaker tieBreaker = votingSystem instanceof TieBreaking ? ((TieBreaking) votingSystem).getTieBreaker() : null;
+        this.tieSeed = tieBreaker != null && tieBreaker.getDraws() > 0 ? tieBreaker.getSeed() : null;
+        this.output = output;
+        this.parseNanos = parseNanos;
+        this.countNanos = countNanos;
+        this.error = null;
+        this.metrics = metrics;
+    }
+
+    /**
+    * <p> Creates the result of an election that could not be counted. </p>
+    * @param  election File of the election.
+    * @param  error    String describing why it could not be counted.
+    * @param  output   what the election printed before it failed.
+    */
+    public ElectionResult(File election, String error, String output) {
+        this.election = election;
+        this.votingSystem = "";
+        this.numBallots = 0;
+        this.winners = new String[0];
+        this.names = new String[0];
+        this.parties = new String[0];
+        this.ballots = new int[0];
+        this.events = Collections.emptyList();
+        this.tieSeed = null;
+        this.output = output;
+        this.parseNanos = 0;
+        this.countNanos = 0;
+        this.error = error;
+        this.metrics = null;
+    }
+
+    /**
+    * <p> Gets the names of the winners of an election that has been run. </p>
+    * @param  votingSystem the voting system the election was counted with.
+    * @return String array of the winners' names, in the order they were seated.
+    */
+    public static String[] winnersOf(VotingSystem votingSystem) {
+        if(votingSystem instanceof IRVotingSystem) {
+            return ((IRVotingSystem) votingSystem).getWinners();
+        }
+        if(votingSystem instanceof OPLVotingSystem) {
+            return ((OPLVotingSystem) votingSystem).getWinners();
+        }
+        if(votingSystem instanceof MPOVotingSystem) {
+            return ((MPOVotingSystem) votingSystem).getWinners();
+        }
+        return new String[0];
+    }
+
+    /**
+    * <p> Writes the result as one JSON object. The rounds are the audit events of the election in the form they take in the
+    * JSON audit file. </p>
+    * @return String of JSON.
+    */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"election\":");
+        AuditEvent.quote(json, election.getPath());
+        if(error != null) {
+            json.append(",\"error\":");
+            AuditEvent.quote(json, error);
+            json.append(",\"output\":");
+            AuditEvent.quote(json, output);
+            return json.append('}').toString();
+        }
+        json.append(",\"voting\":");
+        AuditEvent.quote(json, votingSystem);
+        json.append(",\"ballots\":").append(numBallots);
+        json.append(",\"winners\":[");
+        for(int i = 0; i<winners.length; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            AuditEvent.quote(json, winners[i]);
+        }
+        json.append("],\"candidates\":[");
+        for(int i = 0; i<names.length; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":");
+            AuditEvent.quote(json, names[i]);
+            json.append(",\"party\":");
+            AuditEvent.quote(json, parties[i]);
+            json.append(",\"ballots\":").append(ballots[i]).append('}');
+        }
+        json.append("],\"rounds\":[");
+        for(int i = 0; i<events.size(); i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            events.get(i).toJson(json);
+        }
+        json.append(']');
+        if(tieSeed != null) {
+            json.append(",\"tie_seed\":").append(tieSeed);
+        }
+        json.append(",\"timings\":{\"parse_ms\":").append(parseNanos / 1000000.0).append(",\"count_ms\":").append(countNanos / 1000000.0).append('}');
+        if(metrics != null) {
+            json.append(",\"metrics\":").append(metrics.toJson());
+        }
+        json.append(",\"output\":");
+        AuditEvent.quote(json, output);
+        return json.append('}').toString();
+    }
+
+    public File getElection() {
+        return election;
+    }
+
+    /**
+    * <p> Getter for the type of election. </p>
+    * @return String of IR, OPL or MPO, empty if the election could not be counted.
+    */
+    public String getVotingSystem() {
+        return votingSystem;
+    }
+
+    public int getNumBallots() {
+        return numBallots;
+    }
+
+    public String[] getWinners() {
+        return winners.clone();
+    }
+
+    /**
+    * <p> Getter for the final number of ballots or votes of a candidate. </p>
+    * @param  name name of the candidate.
+    * @return int ballots of the candidate, or -1 if there is no candidate with that name.
+    */
+    public int getBallots(String name) {
+        for(int i = 0; i<names.length; i++) {
+            if(names[i].equals(name)) {
+                return ballots[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * <p> Getter for the audit events of the election, from its initial state to its last seat. </p>
+    * @return List of the events, which cannot be changed.
+    */
+    public List<AuditEvent> getEvents() {
+        return events;
+    }
+
+    /**
+    * <p> Getter for the seed ties were broken with. </p>
+    * @return Long seed, or null if no tie was broken at random.
+    */
+    public Long getTieSeed() {
+        return tieSeed;
+    }
+
+    /**
+    * <p> Getter for what the election printed, as it would have appeared on the console. </p>
+    * @return String of the printed results.
+    */
+    public String getOutput() {
+        return output;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getCountNanos() {
+        return countNanos;
+    }
+
+    /**
+    * <p> Getter for the time spent in each phase of the count. </p>
+    * @return ElectionMetrics of the election, or null if they were not asked for.
+    */
+    public ElectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+    * <p> Getter for why the election could not be counted. </p>
+    * @return String describing the error, or null if the election was counted.
+    */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+* ElectionWatcher follows a .csv election file that is still being appended to, such as on election night when ballots
+* arrive in batches. It remembers the byte offset it has read up to, and each poll only reads the complete lines added
+* after that offset. A line still being written is left for the next poll. The ballots read so far are kept in one
+* FileProcessor, and every publish runs a new VotingSystem over a copy of them, so each result covers every ballot read.
+*/
+public class ElectionWatcher {
+    private static final int SCAN_SIZE = 1 << 16;
+
+    private File fp;
+    private ElectionOptions options;
+    private HeaderProcessor headerProcessor;
+    private FileProcessor tally;
+    private long offset;
+    private VotingSystem votingSystem;
+
+    /**
+    * <p> Creates a watcher for an election file, nothing is read until the first poll. </p>
+    * @param  fp a File object for the .csv election file.
+    */
+    public ElectionWatcher(File fp) {
+        this(fp, new ElectionOptions());
+    }
+
+    /**
+    * <p> Creates a watcher for an election file whose results are counted with the options given on the command line. </p>
+    * @param  fp      a File object for the .csv election file.
+    * @param  options ElectionOptions each publish is counted with, its output directory is where the audit and invalidated
+    *                 ballot files go.
+    */
+    public ElectionWatcher(File fp, ElectionOptions options) {
+        this.fp = fp;
+        this.options = options;
+    }
+
+    /**
+    * <p> Reads the complete ballot lines appended since the last poll and adds them to the ballots read so far. The time
+    * taken depends only on how much was appended. </p>
+    * @return true if any new ballots were read.
+    * @throws FileNotFoundException if the election file does not exist.
+    * @throws IllegalArgumentException if the file is compressed or in the binary ballot format, which cannot be appended to.
+    * @throws IllegalStateException if the header has changed since the first poll.
+    */
+    public boolean poll() throws FileNotFoundException {
+        return read(false);
+    }
+
+    /**
+    * <p> Reads everything appended since the last poll, including a last line that does not end in a newline. Used once
+    * the file is known to be complete, so its final ballot is not left waiting for a newline that will never come. </p>
+    * @return true if any new ballots were read.
+    * @throws FileNotFoundException if the election file does not exist.
+    */
+    public boolean finish() throws FileNotFoundException {
+        return read(true);
+    }
+
+    /**
+    * <p> Reads the ballots appended since the last poll into the tally. </p>
+    * @param  toEnd true to read up to the end of the file, false to stop after the last complete line.
+    * @return true if any new ballots were read.
+    */
+    private boolean read(boolean toEnd) throws FileNotFoundException {
+        HeaderProcessor header = new HeaderProcessor(fp, options.getOutputDir());
+        BallotReader file = header.openBallots();
+        try {
+            FileChannel channel = file.getChannel();
+            if(channel == null || header.isBinary()) {
+                throw new IllegalArgumentException("Only plain .csv election files can be watched: " + fp);
+            }
+            if(headerProcessor == null) {
+                // the tally gets candidates of its own, the ones of this header are filled by the first batch
+                HeaderProcessor tallyHeader = new HeaderProcessor(fp, options.getOutputDir());
+                tallyHeader.readHeader();
+                headerProcessor = header;
+                tally = new FileProcessor(tallyHeader);
+                offset = file.position();
+            } else if(!headerProcessor.sameContest(header)) {
+                throw new IllegalStateException("Header of " + fp + " changed while it was being watched");
+            }
+            long size = channel.size();
+            if(size < offset) {
+                System.out.println("ERROR: " + fp + " got shorter, reading it again from the start.");
+                headerProcessor = null;
+                return read(toEnd);
+            }
+            long end = toEnd ? size : endOfCompleteLines(channel, offset, size);
+            if(end == offset) {
+                return false;
+            }
+            FileProcessor batch = new FileProcessor(header, new BallotReader(channel, offset, end));
+            tally.addAll(batch);
+            offset = end;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                file.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: Unable to close election file.");
+            }
+        }
+    }
+
+    /**
+    * <p> Runs a new VotingSystem over every ballot read so far with the watcher's options, which prints the results and
+    * writes the audit file. </p>
+    * @return VotingSystem object that ran the election, or null if nothing has been polled yet.
+    * @throws FileNotFoundException if the election file does not exist.
+    */
+    public VotingSystem publish() throws FileNotFoundException {
+        if(tally == null) {
+            return null;
+        }
+        // running an election eliminates and elects candidates, so it runs over fresh candidates and the tally is kept as read
+        HeaderProcessor header = new HeaderProcessor(fp, options.getOutputDir());
+        header.readHeader();
+        FileProcessor ballots = new FileProcessor(header);
+        ballots.addAll(tally);
+        votingSystem = header.makeVotingSystem(ballots, ballots.getBallotsRead());
+        options.apply(votingSystem);
+        votingSystem.runElection();
+        return votingSystem;
+    }
+
+    /**
+    * <p> Polls the file until the thread is interrupted, publishing new results whenever ballots were appended. </p>
+    * @param  intervalMillis a long representing how many milliseconds to wait between polls.
+    * @throws FileNotFoundException if the election file does not exist.
+    */
+    public void watch(long intervalMillis) throws FileNotFoundException {
+        while(!Thread.currentThread().isInterrupted()) {
+            if(poll()) {
+                publish();
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+    * <p> Finds the end of the last complete line between from and to by scanning backwards for a newline. </p>
+    * @param  channel open FileChannel of the election file.
+    * @param  from    absolute offset the unread data starts at.
+    * @param  to      absolute offset the file currently ends at.
+    * @return long offset just past the last newline, or from if no complete line has been added.
+    */
+    private static long endOfCompleteLines(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long position = to;
+        while(position > from) {
+            int length = (int) Math.min(SCAN_SIZE, position - from);
+            position -= length;
+            buffer.clear().limit(length);
+            while(buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            }
+            for(int i = buffer.position() - 1; i >= 0; i--) {
+                if(buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return from;
+    }
+
+    /**
+    * <p> Getter for the byte offset the ballots have been read up to. </p>
+    * @return long offset just past the last complete line read.
+    */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+    * <p> Getter for the VotingSystem of the last publish. </p>
+    * @return VotingSystem object of the latest results, or null if nothing has been published yet.
+    */
+    public VotingSystem getVotingSystem() {
+        return votingSystem;
+    }
+}
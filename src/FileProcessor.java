@@ -2,6 +2,8 @@ import java.io.*;
 import java.math.RoundingMode;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.*;
+import java.nio.channels.FileChannel;
 
 /**
 * FileProcessor is the object that processes the ballots in a file, creates the ballots, and assigns the ballots to each candidate.
@@ -9,137 +11,564 @@ import java.util.*;
 */
 
 public class FileProcessor {
+    /**
+     * Ballot bodies smaller than this many bytes are always tallied on the calling thread
+     */
+    private static final long PARALLEL_THRESHOLD = 1L << 23;
+    /**
+     * Ballot bodies at least this many bytes long are split between threads, PARALLEL_THRESHOLD unless a test lowered it
+     */
+    private static volatile long parallelThreshold = PARALLEL_THRESHOLD;
+    /**
+     * Most IR ballots presized for when reading a compressed stream, whose length is not known up front
+     */
+    private static final long STREAM_PRESIZE_LIMIT = 1L << 22;
+    /**
+     * Returned by parseRanks() for a ballot line that cannot be read as a ranking of the candidates
+     */
+    static final int MALFORMED = -1;
+
     private ArrayList<Ballot> ballots; 
+    private IRBallotStore ballotStore;
+    private InvalidBallotWriter invalidWriter;
+    private int[] invalidated = new int[InvalidBallotWriter.Reason.values().length];
+    private long invalidThreshold;
     private File electionFile; 
-    private Scanner reader; 
+    private File outputDir;
+    private ElectionMetrics metrics = ElectionMetrics.none();
+    private String votingSystem;
+    private boolean binary;
+    private int numBallots;
+    private BallotReader reader; 
     private ArrayList<Candidate> candidates;
+    private int tallyThreads;
     
     public ArrayList<Ballot> getBallots() {
         return ballots; 
     }
 
+    /**
+    * <p> Getter for the candidates the ballots were counted into. </p>
+    * @return ArrayList of the candidates of the election.
+    */
+    public ArrayList<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    /**
+    * <p> Getter for the number of IR ballots written to invalidated.csv. </p>
+    * @return int representing how many ballots were invalidated, 0 if the file was not an IR election.
+    */
+    public int getInvalidatedCount() {
+        int total = 0;
+        for(int count : invalidated) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+    * <p> Getter for the number of IR ballots invalidated for one reason. </p>
+    * @param  reason the reason to count.
+    * @return int representing how many ballots were invalidated for that reason.
+    */
+    public int getInvalidatedCount(InvalidBallotWriter.Reason reason) {
+        return invalidated[reason.ordinal()];
+    }
+
+    /**
+    * <p> Getter for the number of ballot lines read, counting the IR ballots that were invalidated. </p>
+    * @return int representing how many ballots this FileProcessor holds.
+    */
+    public int getBallotsRead() {
+        if(ballotStore != null) {
+            return ballotStore.size() + getInvalidatedCount();
+        }
+        int total = 0;
+        for(Candidate c : candidates) {
+            total += c.getBallotCount();
+        }
+        return total;
+    }
+
+    /**
+    * <p> Adds the ballots another FileProcessor read into this one's candidates. Both must be for the same contest, and
+    * none of this FileProcessor's candidates may have been eliminated or elected yet. </p>
+    * @param  other FileProcessor that read another part of the same contest.
+    */
+    public void addAll(FileProcessor other) {
+        for(int i = 0; i<invalidated.length; i++) {
+            invalidated[i] += other.invalidated[i];
+        }
+        if(ballotStore != null) {
+            ballotStore.addAll(other.ballotStore);
+            return;
+        }
+        for(int i = 0; i<candidates.size(); i++) {
+            Candidate c = candidates.get(i);
+            int votes = other.candidates.get(i).getBallotCount();
+            if(c instanceof OPLCandidate) {
+                ((OPLCandidate) c).addVotes(votes);
+            } else {
+                ((MPOCandidate) c).addVotes(votes);
+            }
+        }
+    }
+
+    /**
+    * <p> Finds where a file the election writes, such as the audit file, goes. </p>
+    * @param  name name of the file.
+    * @return File in the directory the election writes to, the working directory unless the header was given another.
+    */
+    public File getOutputFile(String name) {
+        return new File(outputDir, name);
+    }
+
+    /**
+    * <p> Getter for the store holding the valid ballots of an IR election. </p>
+    * @return IRBallotStore with the IR ballots, or null if the file was not an IR election.
+    */
+    public IRBallotStore getBallotStore() {
+        return ballotStore;
+    }
+
+    /**
+    * <p> Getter for the metrics the election is timed with. </p>
+    * @return ElectionMetrics from the HeaderProcessor that read the header.
+    */
+    public ElectionMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
     * <p> Initializes the attributes of the FileProcessor object when a new FileProcessor object is created. </p>
     * @param  fp         a File object for the election csv file. 
     * @param  candidates an ArrayList of the candidates for the current election from the HeaderProcessor object.
     */
     public FileProcessor(File fp, ArrayList<Candidate> candidates) { // should change fileName to be a file pointer, as we already have one
+        this(fp, candidates, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    * <p> Initializes the attributes of the FileProcessor object, tallying OPL and MPO ballots on up to the given number of threads.
+    * The header is read by a HeaderProcessor, so the ballots start wherever the header actually ends. </p>
+    * @param  fp           a File object for the election csv file. 
+    * @param  candidates   an ArrayList of the candidates for the current election from the HeaderProcessor object.
+    * @param  tallyThreads an int representing the most threads to count OPL and MPO ballots on, 1 counts them serially.
+    */
+    public FileProcessor(File fp, ArrayList<Candidate> candidates, int tallyThreads) {
         electionFile = fp;
+        this.tallyThreads = Math.max(1, tallyThreads);
+        ballots = new ArrayList<Ballot>();
+        this.candidates = candidates; // since all we need from voting system is the candidates, we should just pass those in
+        HeaderProcessor header = new HeaderProcessor(fp);
         try {
-            reader = new Scanner(electionFile);
+            reader = header.openBallots();
+            readHeaderInfo(header);
         }
-        catch (IOException e) {
+        catch (FileNotFoundException e) {
             System.out.println("Error - no file");
         }
+        catch (NoSuchElementException e) {
+            System.out.println("Error - file is empty");
+        }
+        processFile();
+    }
+
+    /**
+    * <p> Initializes the FileProcessor with a reader the HeaderProcessor has already moved past the header, so the file is
+    * opened and its header scanned only once. </p>
+    * @param  header HeaderProcessor that read the header of the election file.
+    * @param  reader BallotReader positioned at the first ballot, closed once the ballots are processed.
+    */
+    public FileProcessor(HeaderProcessor header, BallotReader reader) {
+        this(header, reader, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    * <p> Initializes the FileProcessor with a reader the HeaderProcessor has already moved past the header, tallying OPL and MPO
+    * ballots on up to the given number of threads. </p>
+    * @param  header       HeaderProcessor that read the header of the election file.
+    * @param  reader       BallotReader positioned at the first ballot, closed once the ballots are processed.
+    * @param  tallyThreads an int representing the most threads to count OPL and MPO ballots on, 1 counts them serially.
+    */
+    public FileProcessor(HeaderProcessor header, BallotReader reader, int tallyThreads) {
+        electionFile = header.getFp();
+        this.tallyThreads = Math.max(1, tallyThreads);
         ballots = new ArrayList<Ballot>();
-        this.candidates = candidates; // since all we need from voting system is the candidates, we should just pass those in
+        candidates = header.getCandidates();
+        this.reader = reader;
+        readHeaderInfo(header);
         processFile();
     }
 
     /**
-    * <p> Reads through each line of the election file that is not the header and extracts the information for each
-    * ballot. Creates the new ballot depending on the type of election and continues until the end of the file. </p>
+    * <p> Initializes an empty FileProcessor for the header's candidates, holding no ballots until others are added with
+    * addAll(). </p>
+    * @param  header HeaderProcessor that read the header of the election file.
+    */
+    public FileProcessor(HeaderProcessor header) {
+        electionFile = header.getFp();
+        this.tallyThreads = 1;
+        ballots = new ArrayList<Ballot>();
+        candidates = header.getCandidates();
+        readHeaderInfo(header);
+        if(votingSystem.equals("IR")) {
+            ballotStore = new IRBallotStore(candidates, 0);
+        }
+    }
+
+    /**
+    * <p> Copies the header fields that decide how the ballots are read. </p>
+    * @param  header HeaderProcessor that read the header of the election file.
+    */
+    private void readHeaderInfo(HeaderProcessor header) {
+        outputDir = header.getOutputDir();
+        metrics = header.getMetrics();
+        votingSystem = header.getVotingSystem();
+        binary = header.isBinary();
+        numBallots = binary ? header.getNumRecords() : header.getNumBallots();
+    }
+
+    /**
+    * <p> Reads through each ballot of the election file after the header and extracts the information for each
+    * ballot. Creates the new ballot depending on the type of election and continues until the end of the file. 
+    * Ballot lines are scanned as raw bytes by the BallotReader, so no String is created per ballot. </p>
     */
     public void processFile() {
-        String currentData = "";
-        try {
-            currentData = reader.nextLine();
+        if(reader == null) {
+            return;
         }
-        catch (NoSuchElementException e) {
-            System.out.println("Error - file is empty");
-            return; 
-        }
-        int numberOfCandidates = candidates.size(); 
-        if(currentData.equals("OPL")) {
-            for(int i = 0; i<4; i++) {
-                currentData = reader.nextLine(); 
-            }
-            int candidateIndex; 
-            while(reader.hasNextLine()) {
-                candidateIndex = 0; 
-                currentData = reader.nextLine();
-                int currentDataLength = currentData.length();
-                for(int j = 0; j<currentDataLength; j++) {
-                    if(currentData.charAt(j) == ',') {
-                        candidateIndex++; 
-                    } else {
-                        break;
+        ElectionMetrics.Timer phase = metrics.begin(ElectionMetrics.Phase.BALLOTS);
+        try {
+            if(binary) {
+                processBinaryFile();
+            }
+            else if(votingSystem.equals("OPL")) {
+                if(useParallelTally()) {
+                    int[] counts = parallelTally();
+                    for(int i = 0; i<counts.length; i++) {
+                        ((OPLCandidate) candidates.get(i)).addVotes(counts[i]);
+                    }
+                    return;
+                }
+                int candidateIndex; 
+                while((candidateIndex = reader.nextLeadingCommaCount()) >= 0) {
+                    OPLCandidate candidate = (OPLCandidate) candidates.get(candidateIndex);
+                    candidate.addVote();
+                }
+            }
+            else if (votingSystem.equals("MPO")) {
+                if(useParallelTally()) {
+                    int[] counts = parallelTally();
+                    for(int i = 0; i<counts.length; i++) {
+                        ((MPOCandidate) candidates.get(i)).addVotes(counts[i]);
                     }
+                    return;
+                }
+                int candidateIndex;
+                while((candidateIndex = reader.nextLeadingCommaCount()) >= 0) {
+                    MPOCandidate candidate = (MPOCandidate) candidates.get(candidateIndex);
+                    candidate.addVote();
+                }
+            }
+            else {
+                processIRBallots();
+            }
+        }
+        catch (IOException e) {
+            System.out.println("ERROR: Unable to read election file" + (e.getMessage() == null ? "." : ", " + e.getMessage() + "."));
+        }
+        finally {
+            if(invalidWriter != null) {
+                invalidWriter.close();
+                for(InvalidBallotWriter.Reason reason : InvalidBallotWriter.Reason.values()) {
+                    invalidated[reason.ordinal()] = invalidWriter.getCount(reason);
                 }
-                OPLCandidate candidate = (OPLCandidate) candidates.get(candidateIndex);
-                candidate.addVote();
             }
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: Unable to close election file.");
+            }
+            metrics.end(phase, getBallotsRead(), 0);
+        }
+    }
+
+    /**
+    * <p> Reads the IR ballots from the current position of the reader to the end of the file. Each rank is parsed straight
+    * from the line bytes into a reused array and valid ballots are packed into an IRBallotStore, so nothing is allocated
+    * per ballot. </p>
+    */
+    private void processIRBallots() throws IOException {
+        startIRBallots();
+        int[] currentRankings = new int[candidates.size()];
+        int lineLength;
+        while((lineLength = reader.nextLine()) >= 0) {
+            byte[] line = reader.getLine();
+            int candidatesRanked = parseRanks(line, lineLength, currentRankings);
+            addIRBallot(currentRankings, candidatesRanked, line, lineLength);
         }
-        else if (currentData.equals("MPO")) {
-            for(int i = 0; i < 4; i++){
-                currentData = reader.nextLine();
+    }
+
+    /**
+    * <p> Reads the ballot records of a file in the binary ballot format, see BinaryBallotFile for the layout. OPL and MPO
+    * records are a candidate index each, IR records are decoded into the same rank array the .csv path fills. </p>
+    */
+    private void processBinaryFile() throws IOException {
+        int records = numBallots;
+        if(votingSystem.equals("OPL") || votingSystem.equals("MPO")) {
+            int[] counts = new int[candidates.size()];
+            for(int i = 0; i<records; i++) {
+                counts[readBinaryField(0, candidates.size() - 1, "candidate index")]++;
             }
-            int candidateIndex;
-            while(reader.hasNextLine()){
-                candidateIndex = 0;
-                currentData = reader.nextLine();
-                int currentDataLength = currentData.length();
-                for(int j = 0; j <currentDataLength; j++) {
-                    if(currentData.charAt(j) == ',') {
-                        candidateIndex++;
-                    } else {
-                        break;
-                    }
+            for(int i = 0; i<counts.length; i++) {
+                Candidate candidate = candidates.get(i);
+                if(candidate instanceof OPLCandidate) {
+                    ((OPLCandidate) candidate).addVotes(counts[i]);
+                } else {
+                    ((MPOCandidate) candidate).addVotes(counts[i]);
                 }
-                MPOCandidate candidate = (MPOCandidate) candidates.get(candidateIndex);
-                candidate.addVote();
             }
         }
         else {
-            File invalidIRFile = new File("invalidated.csv");
-            OutputStream stream = null;
-            try {
-                stream = new FileOutputStream(invalidIRFile, true);
-            } catch (IOException execpt) {
-                System.out.println("ERROR: Unable to open file for writing correctly.");
-            }
-            double preprocessedThreshold = 0.5 * (double) numberOfCandidates;
-            long threshold = java.lang.Math.round(preprocessedThreshold);
-            for(int i = 0; i<3; i++) {
-                currentData = reader.nextLine(); 
-            }
-            int candidateIndex; 
-            int rank; 
-            while(reader.hasNextLine()) {
-                int candidatesRanked = 0; 
-                ArrayList<Candidate> currentRankings = new ArrayList<Candidate>();
-                for(int i = 0; i<numberOfCandidates; i++){
-                    currentRankings.add(null);
+            startIRBallots();
+            int[] currentRankings = new int[candidates.size()];
+            for(int i = 0; i<records; i++) {
+                int candidatesRanked = readBinaryField(0, candidates.size(), "number of candidates ranked");
+                int ranks = readBinaryField(0, candidates.size(), "number of ranks");
+                Arrays.fill(currentRankings, -1);
+                for(int j = 0; j<ranks; j++) {
+                    // 0 is a rank nobody was given, anything else is the candidate index plus one
+                    currentRankings[j] = readBinaryField(0, candidates.size(), "ranked candidate") - 1;
                 }
-                candidateIndex = 0; 
-                currentData = reader.nextLine();
-                int currentDataLength = currentData.length(); 
-                for(int j = 0; j<currentDataLength; j++) {
-                    if(currentData.charAt(j) == ',') {
-                        candidateIndex++;
-                        continue; 
-                    } else {
-                        candidatesRanked++;
-                        rank = Integer.parseInt(String.valueOf(currentData.charAt(j)));
-                        currentRankings.set(rank-1, candidates.get(candidateIndex));
+                addIRBallot(currentRankings, candidatesRanked, null, 0);
+            }
+        }
+    }
+
+    /**
+    * <p> Reads one number of a binary ballot record and checks it fits the election, so a corrupt file cannot index past the
+    * candidates. </p>
+    * @param  min  smallest value the field can take.
+    * @param  max  largest value the field can take.
+    * @param  name what the field holds, for the error.
+    * @return int value of the field.
+    * @throws IOException naming the file and byte offset of the field if its value is out of range.
+    */
+    private int readBinaryField(int min, int max, String name) throws IOException {
+        long offset = reader.position();
+        int value = reader.readVarInt();
+        if(value < min || value > max) {
+            throw new IOException("Binary ballot file " + electionFile + " has " + name + " " + Integer.toUnsignedString(value)
+                + " at byte " + offset + ", expected " + min + " to " + max);
+        }
+        return value;
+    }
+
+    /**
+    * <p> Creates the IRBallotStore and works out how many candidates a ballot has to rank to be valid. </p>
+    */
+    private void startIRBallots() {
+        // every ballot takes at least one byte per candidate in a .csv file and two bytes in a binary one, which
+        // bounds the presized arrays if the declared ballot count is wrong. A compressed stream has no known length
+        long maxBallots = STREAM_PRESIZE_LIMIT;
+        if(reader.getChannel() != null) {
+            long remaining = reader.getEnd() - reader.position();
+            maxBallots = binary ? remaining / 2 : remaining / Math.max(1, candidates.size()) + 1;
+        }
+        ballotStore = new IRBallotStore(candidates, (int) Math.min(numBallots, maxBallots));
+        invalidWriter = new InvalidBallotWriter(getOutputFile(InvalidBallotWriter.FILE_NAME));
+        double preprocessedThreshold = 0.5 * (double) candidates.size();
+        invalidThreshold = java.lang.Math.round(preprocessedThreshold);
+    }
+
+    /**
+    * <p> Adds one parsed IR ballot to the IRBallotStore, or hands it to the InvalidBallotWriter if it is malformed, ranks
+    * fewer than half of the candidates or gives nobody the first rank. </p>
+    * @param  currentRankings  candidate index for each rank, -1 where no candidate was given the rank.
+    * @param  candidatesRanked number of ranks filled in on the ballot, or MALFORMED.
+    * @param  line             bytes of the ballot line, or null to rebuild the line from the rankings.
+    * @param  lineLength       number of bytes of line that belong to the ballot.
+    */
+    private void addIRBallot(int[] currentRankings, int candidatesRanked, byte[] line, int lineLength) {
+        int numberOfCandidates = candidates.size();
+        // preferences end at the first rank nobody was given
+        int ranked = 0;
+        while(candidatesRanked != MALFORMED && ranked < numberOfCandidates && currentRankings[ranked] >= 0) {
+            ranked++;
+        }
+        if(candidatesRanked < invalidThreshold || ranked == 0) {
+            if(line == null) {
+                line = rankingsToLine(currentRankings);
+                lineLength = line.length;
+            }
+            InvalidBallotWriter.Reason reason = candidatesRanked < invalidThreshold && candidatesRanked != MALFORMED
+                ? InvalidBallotWriter.Reason.UNDER_RANKED : InvalidBallotWriter.Reason.MALFORMED;
+            invalidWriter.write(line, lineLength, reason);
+        }
+        else {
+            ballotStore.addBallot(currentRankings, ranked);
+        }
+    }
+
+    /**
+    * <p> Parses the ranks of one IR ballot line. </p>
+    * @param  line       bytes of the ballot line.
+    * @param  lineLength number of bytes of line that belong to the ballot.
+    * @param  rankings   array with one entry per candidate, filled with the candidate index given each rank or -1.
+    * @return int representing how many ranks were filled in on the ballot, or MALFORMED if a rank is larger than the number of
+    *         candidates or falls in a field past the last candidate.
+    */
+    static int parseRanks(byte[] line, int lineLength, int[] rankings) {
+        Arrays.fill(rankings, -1);
+        int candidatesRanked = 0; 
+        int candidateIndex = 0; 
+        int rank = 0;
+        for(int j = 0; j<lineLength; j++) {
+            byte b = line[j];
+            if(b == ',') {
+                if(rank > 0) {
+                    if(rank > rankings.length || candidateIndex >= rankings.length) {
+                        return MALFORMED;
                     }
+                    rankings[rank-1] = candidateIndex;
+                    rank = 0;
                 }
-                
-                if(candidatesRanked < threshold) {
-                    try {
-                        stream.write(currentData.getBytes());
-                        String newLine = "\n";
-                        stream.write(newLine.getBytes());
-                    } catch (IOException execp) {
-                        System.out.println("ERROR: Unable to write information passed to audit file.");
-                    }
+                candidateIndex++;
+            } else if(b >= '0' && b <= '9') {
+                if(rank == 0) {
+                    candidatesRanked++;
+                }
+                if(rank <= rankings.length) {
+                    // once a rank is too large it stays too large, so a long run of digits cannot overflow
+                    rank = rank * 10 + (b - '0');
                 }
-                else {
-                    IRBallot newBallot = new IRBallot(currentRankings);
-                    ballots.add((Ballot) newBallot);
+            }
+        }
+        if(rank > 0) {
+            if(rank > rankings.length || candidateIndex >= rankings.length) {
+                return MALFORMED;
+            }
+            rankings[rank-1] = candidateIndex;
+        }
+        return candidatesRanked;
+    }
+
+    /**
+    * <p> Rebuilds the .csv line of an IR ballot from its rankings. </p>
+    * @param  rankings candidate index for each rank, -1 where no candidate was given the rank.
+    * @return bytes of the ballot line without a newline.
+    */
+    private byte[] rankingsToLine(int[] rankings) {
+        int[] rankOf = new int[candidates.size()];
+        for(int rank = 0; rank<rankings.length; rank++) {
+            if(rankings[rank] >= 0) {
+                rankOf[rankings[rank]] = rank + 1;
+            }
+        }
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i<rankOf.length; i++) {
+            if(i > 0) {
+                line.append(',');
+            }
+            if(rankOf[i] > 0) {
+                line.append(rankOf[i]);
+            }
+        }
+        return line.toString().getBytes();
+    }
+
+    /**
+    * <p> Checks if the remaining ballot body is large enough, and enough threads were allowed, to be worth splitting up. </p>
+    * @return true if the OPL or MPO ballots should be tallied by parallelTally().
+    */
+    private boolean useParallelTally() {
+        return tallyThreads > 1 && reader.getChannel() != null && reader.getEnd() - reader.position() >= parallelThreshold;
+    }
+
+    /**
+    * <p> Splits the ballot body into one chunk per thread and counts each chunk on its own thread. Every worker fills a private
+    * array of per-candidate counts, so no candidate is touched until the arrays are summed at the end. A chunk owns every line
+    * that starts inside it, which gives the same totals as reading the lines one after another. </p>
+    * @return int array holding the number of votes for each candidate, indexed by ballot index.
+    */
+    private int[] parallelTally() throws IOException {
+        FileChannel channel = reader.getChannel();
+        long bodyStart = reader.position();
+        long bodyEnd = reader.getEnd();
+        long chunkSize = (bodyEnd - bodyStart + tallyThreads - 1) / tallyThreads;
+        int numberOfCandidates = candidates.size();
+        ExecutorService pool = Executors.newFixedThreadPool(tallyThreads);
+        try {
+            ArrayList<Future<int[]>> chunks = new ArrayList<>();
+            for(long start = bodyStart; start < bodyEnd; start += chunkSize) {
+                long chunkStart = start;
+                long chunkEnd = Math.min(start + chunkSize, bodyEnd);
+                chunks.add(pool.submit(() -> tallyChunk(channel, chunkStart, chunkEnd, chunkStart == bodyStart, bodyEnd, numberOfCandidates)));
+            }
+            int[] counts = new int[numberOfCandidates];
+            for(Future<int[]> chunk : chunks) {
+                int[] chunkCounts = chunk.get();
+                for(int i = 0; i<numberOfCandidates; i++) {
+                    counts[i] += chunkCounts[i];
                 }
-                
             }
+            return counts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while tallying ballots", e);
+        } catch (ExecutionException e) {
+            // fail the way reading the lines one after another would, so a bad line never leaves the count at zero votes
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Unable to tally ballots", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+    * <p> Sets how long the ballot body must be before OPL and MPO ballots are split between threads, so the parallel tally
+    * can be tested on small files. </p>
+    * @param  bytes a long representing the shortest body to split, or 0 to go back to the default.
+    */
+    static void setParallelThreshold(long bytes) {
+        parallelThreshold = bytes > 0 ? bytes : PARALLEL_THRESHOLD;
+    }
+
+    /**
+    * <p> Counts the OPL or MPO ballots whose lines start between chunkStart and chunkEnd. </p>
+    * @param  channel            open FileChannel of the election file.
+    * @param  chunkStart         absolute offset the chunk starts at.
+    * @param  chunkEnd           absolute offset the chunk ends at.
+    * @param  atLineStart        true if chunkStart is known to be the start of a line.
+    * @param  bodyEnd            absolute offset of the end of the file.
+    * @param  numberOfCandidates number of candidates in the election.
+    * @return int array holding the number of votes for each candidate in this chunk.
+    */
+    private static int[] tallyChunk(FileChannel channel, long chunkStart, long chunkEnd, boolean atLineStart, long bodyEnd, int numberOfCandidates) throws IOException {
+        int[] counts = new int[numberOfCandidates];
+        // start one byte early so a line that began in the previous chunk is finished and skipped
+        BallotReader chunk = new BallotReader(channel, atLineStart ? chunkStart : chunkStart - 1, bodyEnd);
+        try {
+            if(!atLineStart) {
+                chunk.nextLeadingCommaCount();
+            }
+            int candidateIndex;
+            while(chunk.position() < chunkEnd && (candidateIndex = chunk.nextLeadingCommaCount()) >= 0) {
+                counts[candidateIndex]++;
+            }
+        } finally {
+            chunk.close();
         }
+        return counts;
     }
-}
\ No newline at end of file
+}
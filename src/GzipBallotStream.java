@@ -0,0 +1,145 @@
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+* GzipBallotStream decompresses a gzip compressed election file on a background thread while the ballots already
+* decompressed are being read, so inflating the file and counting its ballots overlap instead of taking turns. Files made
+* of several concatenated gzip members are read member after member. Decompressed data is handed over in large blocks
+* through a bounded queue and the blocks are reused, so memory use stays fixed however big the file is.
+*/
+public class GzipBallotStream extends InputStream {
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int QUEUE_BLOCKS = 8;
+
+    /**
+     * Block of decompressed bytes passed from the background thread to the reader
+     */
+    private static class Block {
+        private final byte[] data = new byte[BLOCK_SIZE];
+        private int length;
+    }
+
+    private static final Block END = new Block();
+
+    private final BlockingQueue<Block> filled;
+    private final BlockingQueue<Block> empty;
+    private final Thread inflater;
+    private volatile IOException failure;
+    private Block current;
+    private int offset;
+
+    /**
+    * <p> Opens the compressed file and starts decompressing it in the background. </p>
+    * @param  fp a File object for the gzip compressed election file.
+    * @throws IOException if the file cannot be opened or does not start with a gzip header.
+    */
+    public GzipBallotStream(File fp) throws IOException {
+        InputStream gzip = new GZIPInputStream(new FileInputStream(fp), 1 << 16);
+        filled = new ArrayBlockingQueue<>(QUEUE_BLOCKS + 1);
+        empty = new ArrayBlockingQueue<>(QUEUE_BLOCKS + 1);
+        for(int i = 0; i<QUEUE_BLOCKS; i++) {
+            empty.add(new Block());
+        }
+        inflater = new Thread(() -> inflate(gzip), "gzip-" + fp.getName());
+        inflater.setDaemon(true);
+        inflater.start();
+    }
+
+    /**
+    * <p> Checks if a file starts with the gzip magic number. </p>
+    * @param  fp a File object for an election file.
+    * @return true if the file is gzip compressed, false if it is not or cannot be read.
+    */
+    public static boolean isGzip(File fp) {
+        try (InputStream in = new FileInputStream(fp)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+    * <p> Runs on the background thread, filling empty blocks with decompressed bytes until the file ends. </p>
+    * @param  gzip decompressing stream over the file.
+    */
+    private void inflate(InputStream gzip) {
+        try (InputStream in = gzip) {
+            while(true) {
+                Block block = empty.take();
+                block.length = in.readNBytes(block.data, 0, BLOCK_SIZE);
+                if(block.length == 0) {
+                    break;
+                }
+                filled.put(block);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            filled.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+    * <p> Moves on to the next decompressed block once the current one has been read, returning the old one for reuse. </p>
+    * @return false if the end of the decompressed data has been reached.
+    */
+    private boolean nextBlock() throws IOException {
+        if(current == END) {
+            return false;
+        }
+        if(current != null) {
+            empty.add(current);
+        }
+        try {
+            current = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing election file");
+        }
+        offset = 0;
+        if(current == END) {
+            if(failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if((current == null || offset == current.length) && !nextBlock()) {
+            return -1;
+        }
+        return current.data[offset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if((current == null || offset == current.length) && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - offset);
+        System.arraycopy(current.data, offset, b, off, n);
+        offset += n;
+        return n;
+    }
+
+    /**
+    * <p> Stops the background thread, which closes the compressed file. </p>
+    */
+    @Override
+    public void close() {
+        inflater.interrupt();
+    }
+}
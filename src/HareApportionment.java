@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* HareApportionment is the Hare quota with largest remainder, the method OPLVotingSystem uses by default. Each party wins
+* one seat per quota of votes, and the seats left go to the parties with the most votes left over. Parties tied on votes
+* left over are shuffled once when there are more of them than seats left, so a tie for the last seats is one random draw
+* from the tied parties.
+*/
+public class HareApportionment implements ApportionmentMethod {
+
+    @Override
+    public int[] apportion(List<OPLParty> parties, int seats, TieBreaker tieBreaker) {
+        return apportion(parties, seats, tieBreaker, new IntList(seats));
+    }
+
+    /**
+    * <p> Decides how many seats each party wins, and which parties win the seats left after the whole quotas. This is the
+    * only place the Hare quota is worked out, the audited rounds of OPLVotingSystem seat from it too. </p>
+    * @param  parties    parties of the election with their candidates added.
+    * @param  seats      number of seats to allocate.
+    * @param  tieBreaker TieBreaker for parties tied on votes left over.
+    * @param  remainders filled with the indexes of the parties that win a seat by largest remainder, in the order they
+    *                    win it. A party wins at most one.
+    * @return int array with the number of seats won by each party, remainder seats included.
+    */
+    public int[] apportion(List<OPLParty> parties, int seats, TieBreaker tieBreaker, IntList remainders) {
+        int[] won = new int[parties.size()];
+        long quota = quota(parties, seats);
+        long[] remainder = new long[parties.size()];
+        int seatsLeft = seats;
+        for(int i = 0; i<parties.size(); i++) {
+            OPLParty p = parties.get(i);
+            won[i] = wholeQuotas(p, quota);
+            remainder[i] = votesLeft(p, quota);
+            seatsLeft -= won[i];
+        }
+
+        ArrayList<Integer> order = new ArrayList<>();
+        for(int i = 0; i<parties.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Long.compare(remainder[b], remainder[a]));
+        int start = 0;
+        while(seatsLeft > 0 && start < order.size()) {
+            int end = start + 1;
+            while(end < order.size() && remainder[order.get(end)] == remainder[order.get(start)]) {
+                end++;
+            }
+            // parties out of candidates cannot take a seat, so they are not part of the tie
+            ArrayList<Integer> group = new ArrayList<>();
+            for(int i : order.subList(start, end)) {
+                if(won[i] < parties.get(i).getNumCandidates()) {
+                    group.add(i);
+                }
+            }
+            if(group.size() > seatsLeft) {
+                tieBreaker.shuffle(group);
+            }
+            for(int i : group) {
+                if(seatsLeft == 0) {
+                    break;
+                }
+                won[i]++;
+                remainders.add(i);
+                seatsLeft--;
+            }
+            start = end;
+        }
+        return won;
+    }
+
+    /**
+    * <p> Works out the Hare quota, the votes it takes to win one seat. </p>
+    * @param  parties parties of the election with their candidates added.
+    * @param  seats   number of seats to allocate.
+    * @return long quota, 0 when there are fewer votes than seats, so every seat is won by largest remainder.
+    */
+    public static long quota(List<OPLParty> parties, int seats) {
+        long total = 0;
+        for(OPLParty p : parties) {
+            total += p.getTotalVotes();
+        }
+        return seats == 0 ? 0 : total / seats;
+    }
+
+    /**
+    * <p> Works out how many seats a party wins with whole quotas, never more than it has candidates. </p>
+    * @param  party OPLParty to count for.
+    * @param  quota votes it takes to win one seat.
+    * @return int number of seats won before the remainders.
+    */
+    public static int wholeQuotas(OPLParty party, long quota) {
+        long full = quota == 0 ? 0 : party.getTotalVotes() / quota;
+        return (int) Math.min(full, party.getNumCandidates());
+    }
+
+    /**
+    * <p> Works out how many votes a party has left over after its whole quotas. </p>
+    * @param  party OPLParty to count for.
+    * @param  quota votes it takes to win one seat.
+    * @return int votes beyond the party's whole quotas, all of them when the quota is 0.
+    */
+    public static int votesLeft(OPLParty party, long quota) {
+        return (int) (quota == 0 ? party.getTotalVotes() : party.getTotalVotes() % quota);
+    }
+
+    @Override
+    public String getName() {
+        return "Hare quota with largest remainder";
+    }
+}
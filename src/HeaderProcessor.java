@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 
 /**
@@ -6,57 +7,224 @@ import java.util.*;
  * @author Bek Allenson, Matthew Johnson
  */
 public class HeaderProcessor {
+    /**
+     * Most candidates presized for when reading a binary header, so a corrupt count cannot allocate more than the file holds
+     */
+    private static final int CANDIDATE_PRESIZE_LIMIT = 1 << 12;
+
     private File fp;
+    private File outputDir;
     private String votingSystem;
     private int numCandidates;
     private ArrayList<Candidate> candidates;
     private int numSeats;
     private int numBallots;
+    private boolean binary;
+    private int numRecords;
+    private ElectionMetrics metrics;
 
     /**
      * Creates a header processor object
      * @param fp file pointer to the election file
      */
     public HeaderProcessor(File fp) {
+        this(fp, null);
+    }
+
+    /**
+     * Creates a header processor object for an election whose audit and invalidated ballot files go in their own directory
+     * @param fp file pointer to the election file
+     * @param outputDir directory the files written while counting the election go in, null for the working directory
+     */
+    public HeaderProcessor(File fp, File outputDir) {
         this.fp = fp;
+        this.outputDir = outputDir;
+        this.metrics = new ElectionMetrics(fp == null ? "" : fp.getPath(), false);
     }
 
     /**
-     * parses through header to create Voting System depending on election type
+     * parses through header to create Voting System depending on election type. The ballots are read in the same
+     * pass: the reader left at the end of the header is handed to a FileProcessor, so the file is opened and its
+     * header scanned only once
      * @return VotingSystem object which performs the election processing
      * @throws FileNotFoundException
      */
     public VotingSystem parseHeader() throws FileNotFoundException {
-        Scanner scanner = new Scanner(fp);
+        BallotReader reader = openBallots();
+        FileProcessor fileProcessor = new FileProcessor(this, reader);
+        return makeVotingSystem(fileProcessor, numBallots);
+    }
+
+    /**
+     * creates the Voting System for this header's election type over ballots that have already been read
+     * @param fileProcessor FileProcessor that has read the ballots into this header's candidates
+     * @param totalBallots number of ballots cast in the election
+     * @return VotingSystem object which performs the election processing, or null if the type is not recognized
+     */
+    public VotingSystem makeVotingSystem(FileProcessor fileProcessor, int totalBallots) {
+        if(votingSystem.equals("IR")) {
+            IRVotingSystem temp = new IRVotingSystem(candidates, numCandidates, totalBallots, fileProcessor);
+            return temp;
+        } else if (votingSystem.equals("OPL")) {
+            OPLVotingSystem temp = new OPLVotingSystem(candidates, numCandidates, totalBallots, fileProcessor, numSeats);
+            return temp;
+        } else if (votingSystem.equals("MPO")) {
+            MPOVotingSystem temp = new MPOVotingSystem(candidates, numCandidates, totalBallots, fileProcessor, numSeats);
+            return temp;
+        }
+
+        return null;
+    }
+
+    /**
+     * checks if another header describes the same contest as this one, so ballots from both files can be counted together
+     * @param other HeaderProcessor that has read the header of another election file
+     * @return true if the voting system, seats and candidates all match
+     */
+    public boolean sameContest(HeaderProcessor other) {
+        if(!votingSystem.equals(other.votingSystem) || numSeats != other.numSeats || numCandidates != other.numCandidates) {
+            return false;
+        }
+        for(int i = 0; i < numCandidates; i++) {
+            Candidate mine = candidates.get(i);
+            Candidate theirs = other.candidates.get(i);
+            if(!mine.getName().equals(theirs.getName()) || !mine.getParty().equals(theirs.getParty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * reads the header fields of the election file without processing any ballots
+     * @throws FileNotFoundException
+     */
+    public void readHeader() throws FileNotFoundException {
+        BallotReader reader = openBallots();
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        votingSystem = scanner.nextLine();
+    /**
+     * opens the election file and reads its header fields. Gzip compressed files are decompressed as they are
+     * read, and files in the binary ballot format are recognized by their magic number and read through
+     * BinaryBallotFile's layout
+     * @return BallotReader positioned at the first ballot, to be closed by the caller
+     * @throws FileNotFoundException
+     */
+    public BallotReader openBallots() throws FileNotFoundException {
+        ElectionMetrics.Timer phase = metrics.begin(ElectionMetrics.Phase.HEADER);
+        BallotReader reader;
+        try {
+            reader = BallotReader.open(fp);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(fp.getPath() + " (No such file or directory)");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        boolean headerRead = false;
+        try {
+            binary = BinaryBallotFile.isBinary(reader);
+            if(binary) {
+                readBinaryHeader(reader);
+            } else {
+                readCsvHeader(reader);
+            }
+            headerRead = true;
+            metrics.setVotingSystem(votingSystem);
+            metrics.end(phase);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if(!headerRead) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    System.out.println("ERROR: Unable to close election file.");
+                }
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Helper function which reads the header lines of a .csv election file
+     * @param reader BallotReader positioned at the start of the file
+     */
+    private void readCsvHeader(BallotReader reader) throws IOException {
+        votingSystem = nextHeaderLine(reader);
         
         if(votingSystem.equals("MPO")) {
-            numSeats = Integer.parseInt(scanner.nextLine());
-            numCandidates = Integer.parseInt(scanner.nextLine());
+            numSeats = Integer.parseInt(nextHeaderLine(reader));
+            numCandidates = Integer.parseInt(nextHeaderLine(reader));
         }
         else{
-            numCandidates = Integer.parseInt(scanner.nextLine());
+            numCandidates = Integer.parseInt(nextHeaderLine(reader));
         }
-        candidates = new ArrayList<>();
-        makeCandidateList(scanner.nextLine());
+        candidates = new ArrayList<>(numCandidates);
+        makeCandidateList(nextHeaderLine(reader));
         if(votingSystem.equals("OPL")) {
-            numSeats = Integer.parseInt(scanner.nextLine());
+            numSeats = Integer.parseInt(nextHeaderLine(reader));
         }
-        numBallots = Integer.parseInt(scanner.nextLine());
+        numBallots = Integer.parseInt(nextHeaderLine(reader));
+    }
 
-        if(votingSystem.equals("IR")) {
-            IRVotingSystem temp = new IRVotingSystem(candidates, numCandidates, numBallots, fp);
-            return temp;
-        } else if (votingSystem.equals("OPL")) {
-            OPLVotingSystem temp = new OPLVotingSystem(candidates, numCandidates, numBallots, fp, numSeats);
-            return temp;
-        } else if (votingSystem.equals("MPO")) {
-            MPOVotingSystem temp = new MPOVotingSystem(candidates, numCandidates, numBallots, fp, numSeats);
-            return temp;
+    /**
+     * Helper function which reads one line of a .csv header
+     * @param reader BallotReader positioned at the start of a header line
+     * @return the header line
+     * @throws NoSuchElementException if the file ends before the header does
+     */
+    private String nextHeaderLine(BallotReader reader) throws IOException {
+        String line = reader.nextLineString();
+        if(line == null) {
+            throw new NoSuchElementException("No line found");
         }
+        return line;
+    }
 
-        return null;
+    /**
+     * Helper function which reads the header of a file in the binary ballot format
+     * @param reader BallotReader positioned at the start of the file
+     */
+    private void readBinaryHeader(BallotReader reader) throws IOException {
+        BinaryBallotFile.checkMagic(reader);
+        votingSystem = reader.readString();
+        numSeats = reader.readVarInt();
+        numCandidates = readBinaryCount(reader, 2, "candidate count");
+        candidates = new ArrayList<>(Math.min(numCandidates, CANDIDATE_PRESIZE_LIMIT));
+        for(int i = 0; i < numCandidates; i++) {
+            String name = reader.readString();
+            String party = reader.readString();
+            candidates.add(makeCandidate(name, party, i));
+        }
+        numBallots = reader.readVarInt();
+        numRecords = reader.readVarInt();
+    }
+
+    /**
+     * Helper function which reads a count from a binary header and checks the bytes left in the file could hold that many
+     * entries, the way FileProcessor checks the fields of a ballot record
+     * @param reader BallotReader positioned at the count
+     * @param bytesEach fewest bytes one entry takes
+     * @param name what is counted, for the error
+     * @return the count
+     * @throws IOException naming the file and byte offset of the count if it is negative or too large for the file
+     */
+    private int readBinaryCount(BallotReader reader, int bytesEach, String name) throws IOException {
+        long offset = reader.position();
+        int value = reader.readVarInt();
+        long max = Math.min(Integer.MAX_VALUE, (reader.getEnd() - reader.position()) / bytesEach);
+        if(value < 0 || value > max) {
+            throw new IOException("Binary ballot file " + fp + " has " + name + " " + Integer.toUnsignedString(value)
+                + " at byte " + offset + ", expected 0 to " + max);
+        }
+        return value;
     }
 
     /**
@@ -76,26 +244,71 @@ public class HeaderProcessor {
         }
         for(int i = 0; i < numCandidates; i++) {
             Candidate c = null;
-            if(votingSystem.equals("IR")) {
+            if(votingSystem.equals("IR") || votingSystem.equals("OPL")) {
                 String[] candidateInfo = candidateStrings[i].split("[(]", 0);
                 String name = candidateInfo[0];
                 String party = candidateInfo[1].substring(0, 1);
-                c = new IRCandidate(name, party, i);
-            } else if (votingSystem.equals("OPL")) {
-                String[] candidateInfo = candidateStrings[i].split("[(]", 0);
-                String name = candidateInfo[0];
-                String party = candidateInfo[1].substring(0, 1);
-                c = new OPLCandidate(name, party, i);
+                c = makeCandidate(name, party, i);
             } else if (votingSystem.equals("MPO")) {
                 String[] candidateInfo = candidateStrings[i].split(",", 0);
                 String name = candidateInfo[0];
                 String party = candidateInfo[1];
-                c = new MPOCandidate(name,party,i);
+                c = makeCandidate(name, party, i);
             }
             candidates.add(c);
         }
     }
 
+    /**
+     * Helper function which creates the Candidate subclass matching the voting system
+     * @param name name of the candidate
+     * @param party party of the candidate
+     * @param ballotIndex index of the candidate on the ballots
+     * @return Candidate object, or null if the voting system is not recognized
+     */
+    private Candidate makeCandidate(String name, String party, int ballotIndex) {
+        if(votingSystem.equals("IR")) {
+            return new IRCandidate(name, party, ballotIndex);
+        } else if (votingSystem.equals("OPL")) {
+            return new OPLCandidate(name, party, ballotIndex);
+        } else if (votingSystem.equals("MPO")) {
+            return new MPOCandidate(name, party, ballotIndex);
+        }
+        return null;
+    }
+
+    /**
+     * getter for the file pointer
+     * @return File the header was read from
+     */
+    public File getFp() {
+        return fp;
+    }
+
+    /**
+     * getter for the directory the files written while counting the election go in
+     * @return File of the directory, or null for the working directory
+     */
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * getter for the metrics the election is timed with
+     * @return ElectionMetrics of the election, which keeps no summary unless setMetrics() was given one that does
+     */
+    public ElectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * sets the metrics the election is timed with, before its header is read
+     * @param metrics ElectionMetrics shared by every part of the election
+     */
+    public void setMetrics(ElectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * getter for String representing voting system
      * @return String with voting system
@@ -120,6 +333,30 @@ public class HeaderProcessor {
         return candidates;
     }
 
+    /**
+     * getter for num seats
+     * @return int representing number of seats available, 0 for IR elections
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * getter for whether the file is in the binary ballot format
+     * @return true if the header was read from a binary ballot file
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * getter for the number of ballot records stored in a binary ballot file
+     * @return int representing how many ballot records follow the binary header
+     */
+    public int getNumRecords() {
+        return numRecords;
+    }
+
     /**
      * @return total number of ballots cast in the election as an int
      */
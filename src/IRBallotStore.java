@@ -0,0 +1,542 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+* IRBallotStore holds every valid ballot of an IR election in a few primitive arrays instead of one IRBallot object per
+* ballot. Ballots that rank the same candidates in the same order are kept once, as a group with a count of how many
+* ballots it stands for, so memory and redistribution time grow with the number of distinct rankings rather than the
+* number of ballots. The preferences of all groups are packed one after another into a single short array, the candidate
+* currently holding a group is tracked with a cursor into that array, and each candidate keeps the indexes of the groups
+* it holds in an IntList. Moving a group to its next preference only updates these arrays.
+*
+* <p> Eliminated candidates are kept in a bitset, so finding a group's next preference is a bit test per rank instead of a
+* call on each candidate. A group's cursor only ever moves forward, so every rank of a group is passed over at most once
+* in the whole election and an elimination costs time in proportion to the groups it transfers. </p>
+*
+* <p> When an eliminated candidate holds many groups, they are split into chunks that find their next preferences on the
+* common fork-join pool. Each chunk only moves the cursors of its own groups and collects the groups for each receiving
+* candidate in buffers of its own, and the buffers are appended in chunk order, so every candidate ends up with the same
+* groups in the same order as when they are moved one after another. </p>
+*
+* <p> If the first ballots added turn out to be mostly distinct, looking them up stops paying for itself, so the store stops
+* collapsing rankings and adds each later ballot as a group of its own. Results are the same either way. </p>
+*
+* <p> Identical ballots always move together, so all ballots must be added before the first candidate is eliminated. </p>
+*/
+public class IRBallotStore {
+    /**
+     * Most groups the arrays are first sized for, since even very large elections have far fewer distinct rankings than ballots
+     */
+    private static final int MAX_INITIAL_GROUPS = 1 << 16;
+    /**
+     * Number of ballots after which the store checks whether collapsing identical rankings is worth it
+     */
+    private static final int DEDUP_SAMPLE = 1 << 16;
+    /**
+     * Fewest groups in a chunk of a parallel redistribution, smaller eliminations are redistributed on the calling thread
+     */
+    private static final int MIN_CHUNK_GROUPS = 1 << 14;
+
+    private IRCandidate[] candidates;
+    private short[] preferences;
+    private int numPreferences;
+    private int[] groupStart;
+    private int[] cursor;
+    private int[] weight;
+    private int[] groupHash;
+    private int numGroups;
+    private int[] table;
+    private boolean dedup;
+    private boolean sharesBallots;
+    private int expectedBallots;
+    private IntList[] held;
+    private long[] eliminated;
+    private IntList changed;
+    private boolean[] isChanged;
+    private int numBallots;
+    private int exhausted;
+
+    /**
+    * <p> Creates an empty store for the given candidates and attaches it to each of them. </p>
+    * @param  candidates      ArrayList of the IRCandidates in the election, in ballot order.
+    * @param  expectedBallots number of ballots expected, which bounds how many groups the arrays are first sized for.
+    */
+    public IRBallotStore(ArrayList<Candidate> candidates, int expectedBallots) {
+        if(candidates.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many candidates for an IR ballot store: " + candidates.size());
+        }
+        int capacity = Math.max(16, Math.min(expectedBallots, MAX_INITIAL_GROUPS));
+        this.candidates = new IRCandidate[candidates.size()];
+        this.held = new IntList[candidates.size()];
+        this.eliminated = new long[(candidates.size() + 63) >>> 6];
+        this.changed = new IntList(16);
+        this.isChanged = new boolean[candidates.size()];
+        for(int i = 0; i<candidates.size(); i++) {
+            this.candidates[i] = (IRCandidate) candidates.get(i);
+            this.candidates[i].attachStore(this);
+            this.held[i] = new IntList(capacity / Math.max(1, candidates.size()));
+        }
+        preferences = new short[capacity * 2];
+        groupStart = new int[capacity + 1];
+        cursor = new int[capacity];
+        weight = new int[capacity];
+        groupHash = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity - 1) << 2];
+        dedup = true;
+        this.expectedBallots = expectedBallots;
+        numPreferences = 0;
+        numGroups = 0;
+        numBallots = 0;
+        exhausted = 0;
+    }
+
+    /**
+    * <p> Creates a copy of a store in its current state for a copy of its candidates, which are attached to it. The copy
+    * shares the rankings and weights of the groups with the other store, since they never change once every ballot has
+    * been added, and copies only where each group has got to and which groups each candidate holds. No ballots may be
+    * added to the copy. </p>
+    * @param  other      IRBallotStore to copy.
+    * @param  candidates ArrayList of IRCandidates with the same running status and ballot counts as the candidates of the
+    *                    other store, in ballot order.
+    */
+    public IRBallotStore(IRBallotStore other, ArrayList<Candidate> candidates) {
+        this.candidates = new IRCandidate[candidates.size()];
+        this.held = new IntList[candidates.size()];
+        this.eliminated = new long[(candidates.size() + 63) >>> 6];
+        this.changed = new IntList(16);
+        this.isChanged = new boolean[candidates.size()];
+        for(int i = 0; i<candidates.size(); i++) {
+            this.held[i] = new IntList(Math.max(16, other.held[i].size()));
+            this.held[i].addAll(other.held[i]);
+            this.candidates[i] = (IRCandidate) candidates.get(i);
+            this.candidates[i].attachStore(this);
+        }
+        preferences = other.preferences;
+        numPreferences = other.numPreferences;
+        groupStart = other.groupStart;
+        weight = other.weight;
+        cursor = Arrays.copyOf(other.cursor, other.numGroups);
+        numGroups = other.numGroups;
+        sharesBallots = true;
+        dedup = false;
+        expectedBallots = other.expectedBallots;
+        numBallots = other.numBallots;
+        exhausted = other.exhausted;
+    }
+
+    /**
+    * <p> Adds a ballot to the store and gives it to its first choice. </p>
+    * @param  ranking candidate ballot indexes in order of preference, the first length entries are used.
+    * @param  length  number of candidates ranked on the ballot, at least 1.
+    */
+    public void addBallot(int[] ranking, int length) {
+        addBallots(ranking, length, 1);
+    }
+
+    /**
+    * <p> Adds a number of identical ballots to the store and gives them to their first choice. </p>
+    * @param  ranking candidate ballot indexes in order of preference, the first length entries are used.
+    * @param  length  number of candidates ranked on the ballots, at least 1. A ballot with no first choice is invalid and is
+    *                 never stored.
+    * @param  count   number of ballots with this ranking.
+    * @throws IllegalArgumentException if length is less than 1.
+    */
+    public void addBallots(int[] ranking, int length, int count) {
+        if(sharesBallots) {
+            throw new IllegalStateException("Ballots cannot be added to a copy of an IR ballot store");
+        }
+        if(length < 1) {
+            throw new IllegalArgumentException("An IR ballot must rank a first choice to be stored");
+        }
+        numBallots += count;
+        if(dedup && numBallots >= DEDUP_SAMPLE && (long) numGroups * 4 > (long) numBallots * 3) {
+            // more than three in four ballots so far were distinct, so the rest are sized for one group per ballot
+            dedup = false;
+            table = null;
+            groupHash = null;
+            growGroups(Math.max(cursor.length, expectedBallots));
+        }
+        if(!dedup) {
+            int group = newGroup(ranking, length, 0, count);
+            held[ranking[0]].add(group);
+            candidates[ranking[0]].addBallots(count);
+            return;
+        }
+        int hash = hash(ranking, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while(table[slot] != 0) {
+            int group = table[slot] - 1;
+            if(groupHash[group] == hash && sameRanking(group, ranking, length)) {
+                weight[group] += count;
+                candidates[ranking[0]].addBallots(count);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int group = newGroup(ranking, length, hash, count);
+        table[slot] = group + 1;
+        if(numGroups * 2 > table.length) {
+            rehash();
+        }
+        held[ranking[0]].add(group);
+        candidates[ranking[0]].addBallots(count);
+    }
+
+    /**
+    * <p> Adds every ballot of another store to this one, giving each to its first choice. Both stores must be for the same
+    * candidates and no candidate may have been eliminated yet. Groups are copied whole, so this takes time in proportion to
+    * the distinct rankings of the other store. </p>
+    * @param  other IRBallotStore whose ballots are copied.
+    */
+    public void addAll(IRBallotStore other) {
+        int[] ranking = new int[candidates.length];
+        for(int group = 0; group<other.numGroups; group++) {
+            int start = other.groupStart[group];
+            int length = other.groupStart[group + 1] - start;
+            for(int i = 0; i<length; i++) {
+                ranking[i] = other.preferences[start + i];
+            }
+            addBallots(ranking, length, other.weight[group]);
+        }
+    }
+
+    /**
+    * <p> Marks the candidate as eliminated and gives each group of ballots it holds to the next ranked candidate on it that
+    * has not been eliminated. </p>
+    * @param  candidate the IRCandidate being eliminated.
+    * @return int representing how many ballots did not have a next ranked candidate.
+    */
+    public int removeCandidate(IRCandidate candidate) {
+        int groups = held[candidate.getBallotIndex()].size();
+        return removeCandidate(candidate, Math.min(ForkJoinPool.getCommonPoolParallelism(), groups / MIN_CHUNK_GROUPS));
+    }
+
+    /**
+    * <p> Eliminates the candidate with its groups split into the given number of chunks, each moved by its own Transfer.
+    * The chunks are merged in order, so the result is the same for any number of them. </p>
+    * @param  candidate the IRCandidate being eliminated.
+    * @param  chunks    number of chunks to split the groups into, below 2 moves them all on the calling thread.
+    * @return int representing how many ballots did not have a next ranked candidate.
+    */
+    int removeCandidate(IRCandidate candidate, int chunks) {
+        int index = candidate.getBallotIndex();
+        setEliminated(index, true);
+        IntList groups = held[index];
+        chunks = Math.min(chunks, groups.size());
+        Transfer total;
+        if(chunks < 2) {
+            total = new Transfer(this, groups, 0, groups.size());
+            total.compute();
+        } else {
+            ArrayList<Transfer> transfers = new ArrayList<>(chunks);
+            for(int i = 0; i<chunks; i++) {
+                transfers.add(new Transfer(this, groups, (int) ((long) groups.size() * i / chunks), (int) ((long) groups.size() * (i + 1) / chunks)));
+            }
+            RecursiveTask.invokeAll(transfers);
+            total = transfers.get(0);
+            for(int i = 1; i<chunks; i++) {
+                total.merge(transfers.get(i));
+            }
+        }
+        for(int i = 0; i<candidates.length; i++) {
+            if(total.moved[i] != null) {
+                held[i].addAll(total.moved[i]);
+                candidates[i].addBallots(total.received[i]);
+                markChanged(i);
+            }
+        }
+        groups.clear();
+        exhausted += total.exhausted;
+        return total.exhausted;
+    }
+
+    /**
+     * Moves one chunk of an eliminated candidate's groups to their next preferences, collecting the groups and ballots each
+     * candidate receives instead of handing them over straight away
+     */
+    private static class Transfer extends RecursiveTask<Transfer> {
+        private static final long serialVersionUID = 1L;
+
+        private final IRBallotStore store;
+        private final IntList groups;
+        private final int from;
+        private final int to;
+        private final IntList[] moved;
+        private final int[] received;
+        private int exhausted;
+
+        private Transfer(IRBallotStore store, IntList groups, int from, int to) {
+            this.store = store;
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.moved = new IntList[store.candidates.length];
+            this.received = new int[store.candidates.length];
+        }
+
+        @Override
+        protected Transfer compute() {
+            int[] weight = store.weight;
+            for(int i = from; i<to; i++) {
+                int group = groups.get(i);
+                int next = store.nextCandidate(group);
+                if(next < 0) {
+                    exhausted += weight[group];
+                } else {
+                    if(moved[next] == null) {
+                        moved[next] = new IntList(16);
+                    }
+                    moved[next].add(group);
+                    received[next] += weight[group];
+                }
+            }
+            return this;
+        }
+
+        /**
+        * <p> Appends the results of the chunk that follows this one. </p>
+        * @param  next Transfer of the following chunk.
+        */
+        private void merge(Transfer next) {
+            for(int i = 0; i<moved.length; i++) {
+                if(next.moved[i] != null) {
+                    if(moved[i] == null) {
+                        moved[i] = next.moved[i];
+                    } else {
+                        moved[i].addAll(next.moved[i]);
+                    }
+                    received[i] += next.received[i];
+                }
+            }
+            exhausted += next.exhausted;
+        }
+    }
+
+    /**
+    * <p> Moves the cursor of a group past its current candidate to the next ranked candidate that has not been eliminated. </p>
+    * @param  group index of the group in the store.
+    * @return ballot index of the candidate the group now belongs to, or -1 if it has no running candidates left.
+    */
+    private int nextCandidate(int group) {
+        int end = groupStart[group + 1];
+        for(int position = cursor[group] + 1; position < end; position++) {
+            int next = preferences[position];
+            if((eliminated[next >>> 6] & (1L << next)) == 0) {
+                cursor[group] = position;
+                return next;
+            }
+        }
+        cursor[group] = end;
+        return -1;
+    }
+
+    /**
+    * <p> Appends a new group to the arrays, growing them if they are full. </p>
+    * @param  ranking candidate ballot indexes in order of preference.
+    * @param  length  number of candidates ranked.
+    * @param  hash    hash of the ranking.
+    * @param  count   number of ballots in the group.
+    * @return int index of the new group.
+    */
+    private int newGroup(int[] ranking, int length, int hash, int count) {
+        if(numGroups == cursor.length) {
+            growGroups(cursor.length * 2);
+        }
+        if(numPreferences + length > preferences.length) {
+            preferences = Arrays.copyOf(preferences, Math.max(preferences.length * 2, numPreferences + length));
+        }
+        int group = numGroups++;
+        groupStart[group] = numPreferences;
+        for(int i = 0; i<length; i++) {
+            preferences[numPreferences++] = (short) ranking[i];
+        }
+        groupStart[numGroups] = numPreferences;
+        cursor[group] = groupStart[group];
+        weight[group] = count;
+        if(groupHash != null) {
+            groupHash[group] = hash;
+        }
+        return group;
+    }
+
+    /**
+    * <p> Grows the per group arrays to hold the given number of groups. </p>
+    * @param  capacity number of groups the arrays must hold.
+    */
+    private void growGroups(int capacity) {
+        if(capacity <= cursor.length) {
+            return;
+        }
+        cursor = Arrays.copyOf(cursor, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        groupStart = Arrays.copyOf(groupStart, capacity + 1);
+        if(groupHash != null) {
+            groupHash = Arrays.copyOf(groupHash, capacity);
+        }
+        long preferencesNeeded = (long) numPreferences * capacity / Math.max(1, numGroups);
+        if(preferencesNeeded > preferences.length && preferencesNeeded < Integer.MAX_VALUE) {
+            preferences = Arrays.copyOf(preferences, (int) preferencesNeeded);
+        }
+    }
+
+    /**
+    * <p> Doubles the hash table and reinserts every group. </p>
+    */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for(int group = 0; group<numGroups; group++) {
+            int slot = groupHash[group] & mask;
+            while(table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = group + 1;
+        }
+    }
+
+    /**
+    * <p> Checks if a group holds exactly the given ranking. </p>
+    * @param  group   index of the group in the store.
+    * @param  ranking candidate ballot indexes in order of preference.
+    * @param  length  number of candidates ranked.
+    * @return true if the group's preferences are the same as the ranking.
+    */
+    private boolean sameRanking(int group, int[] ranking, int length) {
+        int start = groupStart[group];
+        if(groupStart[group + 1] - start != length) {
+            return false;
+        }
+        for(int i = 0; i<length; i++) {
+            if(preferences[start + i] != ranking[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * <p> Hashes a ranking, spreading the bits so that the low bits used as a table slot depend on every rank. </p>
+    * @param  ranking candidate ballot indexes in order of preference.
+    * @param  length  number of candidates ranked.
+    * @return int hash of the ranking.
+    */
+    private static int hash(int[] ranking, int length) {
+        int hash = length;
+        for(int i = 0; i<length; i++) {
+            hash = hash * 31 + ranking[i];
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+    * <p> Marks a candidate as eliminated or back in the running, so ballots skip over or stop at it. </p>
+    * @param  index      ballot index of the candidate.
+    * @param  eliminated true if the candidate has been eliminated.
+    */
+    public void setEliminated(int index, boolean eliminated) {
+        markChanged(index);
+        if(eliminated) {
+            this.eliminated[index >>> 6] |= 1L << index;
+        } else {
+            this.eliminated[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+    * <p> Records that a candidate's ballot count or running status has changed. </p>
+    * @param  index ballot index of the candidate.
+    */
+    private void markChanged(int index) {
+        if(!isChanged[index]) {
+            isChanged[index] = true;
+            changed.add(index);
+        }
+    }
+
+    /**
+    * <p> Getter for the candidates whose ballot count or running status has changed since clearChanged() was last called,
+    * so anything kept in step with the counts only has to look at those candidates. </p>
+    * @return IntList of the ballot indexes of the changed candidates.
+    */
+    public IntList getChanged() {
+        return changed;
+    }
+
+    /**
+    * <p> Forgets the candidates recorded as changed. </p>
+    */
+    public void clearChanged() {
+        for(int i = 0; i<changed.size(); i++) {
+            isChanged[changed.get(i)] = false;
+        }
+        changed.clear();
+    }
+
+    /**
+    * <p> Checks if a candidate has been eliminated. </p>
+    * @param  index ballot index of the candidate.
+    * @return true if ballots skip over the candidate.
+    */
+    public boolean isEliminated(int index) {
+        return (eliminated[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+    * <p> Getter for the candidate a group of ballots is currently assigned to. </p>
+    * @param  group index of the group in the store.
+    * @return the IRCandidate holding the group, or null if its ballots are exhausted.
+    */
+    public IRCandidate getCandidate(int group) {
+        int position = cursor[group];
+        if(position >= groupStart[group + 1]) {
+            return null;
+        }
+        return candidates[preferences[position]];
+    }
+
+    /**
+    * <p> Getter for the number of ballots in a group. </p>
+    * @param  group index of the group in the store.
+    * @return int representing how many ballots share the group's ranking.
+    */
+    public int getWeight(int group) {
+        return weight[group];
+    }
+
+    /**
+    * <p> Getter for the indexes of the groups of ballots a candidate has been given. </p>
+    * @param  candidate an IRCandidate in the election.
+    * @return IntList of group indexes held by the candidate.
+    */
+    public IntList getBallots(IRCandidate candidate) {
+        return held[candidate.getBallotIndex()];
+    }
+
+    /**
+    * <p> Getter for the number of ballots in the store. </p>
+    * @return int representing how many ballots have been added.
+    */
+    public int size() {
+        return numBallots;
+    }
+
+    /**
+    * <p> Getter for the number of distinct rankings in the store. </p>
+    * @return int representing how many groups the ballots were collapsed into.
+    */
+    public int getNumGroups() {
+        return numGroups;
+    }
+
+    /**
+    * <p> Getter for the number of ballots that ran out of running candidates. </p>
+    * @return int representing how many ballots are exhausted.
+    */
+    public int getExhausted() {
+        return exhausted;
+    }
+}
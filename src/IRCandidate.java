@@ -8,6 +8,7 @@ public class IRCandidate extends Candidate {
    
     private boolean inRunning = true; 
     protected ArrayList<IRBallot> ballots; 
+    private IRBallotStore store;
     private int ballotCount;
 
     /**
@@ -43,7 +44,10 @@ public class IRCandidate extends Candidate {
     */
     public int removeCandidate() {
         int numInvalid = 0; // tracker to report back to voting system how many ballots are invalid
-        for(int i = 0; i<ballotCount; i++) {
+        if(store != null) {
+            numInvalid += store.removeCandidate(this);
+        }
+        for(int i = 0; i<ballots.size(); i++) {
             IRBallot currentBallot = ballots.get(i);
             boolean ballotStillValid = currentBallot.getNextCandidate();
             if(!ballotStillValid){
@@ -67,6 +71,23 @@ public class IRCandidate extends Candidate {
         }
     }
 
+    /**
+    * <p> Add ballots held for the candidate in an IRBallotStore to the candidate's ballot count. </p>
+    * @param   count an int representing how many ballots the store has given the candidate.
+    */
+    public void addBallots(int count) {
+        ballotCount += count;
+    }
+
+    /**
+    * <p> Attach the IRBallotStore holding the candidate's ballots, so removeCandidate() can redistribute them. </p>
+    * @param   store the IRBallotStore the ballots of the election are kept in.
+    */
+    public void attachStore(IRBallotStore store) {
+        this.store = store;
+        store.setEliminated(getBallotIndex(), !inRunning);
+    }
+
     /**
     * <p> Set a candidate's running status. </p>
     * @param   b    a boolean representing the desired running status.
@@ -74,5 +95,8 @@ public class IRCandidate extends Candidate {
     
     public void setInRunning(boolean b) {
         this.inRunning = b;
+        if(store != null) {
+            store.setEliminated(getBallotIndex(), !b);
+        }
     }
 }
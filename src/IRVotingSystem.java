@@ -1,5 +1,7 @@
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.io.*;
 
 /**
@@ -7,9 +9,17 @@ import java.io.*;
  * 
  * @author Matthew Johnson
  */
-public class IRVotingSystem extends VotingSystem {
+public class IRVotingSystem extends VotingSystem implements TieBreaking, Audited {
     private IRCandidate winner; 
     private int originalNumberOfCandidates;
+    private boolean batchElimination;
+    private CandidateHeap fewest;
+    private CandidateHeap most;
+    private IRBallotStore ballotStore;
+    private TieBreaker tieBreaker = new TieBreaker();
+    private IRVotingSystem tieState;
+    private boolean copy;
+    private ElectionMetrics metrics = ElectionMetrics.none();
     /**
      * <p>Constructor for the IRVotingSystem class</p>
      * @param c ArrayList of candidates in the running in this election
@@ -22,21 +32,63 @@ public class IRVotingSystem extends VotingSystem {
         this.originalNumberOfCandidates = numCandidates;
     }
 
+    /**
+     * <p>Constructor for the IRVotingSystem class whose ballots have already been read by a FileProcessor</p>
+     * @param c ArrayList of candidates in the running in this election
+     * @param numCandidates number of candidates running in this election
+     * @param numBallots number of ballots cast in this election
+     * @param fileProcessor FileProcessor that has read the ballots of this election
+     */
+    public IRVotingSystem(ArrayList<Candidate> c, int numCandidates, int numBallots, FileProcessor fileProcessor) {
+        super();
+        this.candidates = c;
+        this.numberOfCandidates = numCandidates;
+        this.numberOfBallots = numBallots;
+        this.fileProcessor = fileProcessor;
+        this.metrics = fileProcessor.getMetrics();
+        this.audit = new Audit(fileProcessor.getOutputFile(Audit.FILE_NAME));
+        this.audit.setMetrics(metrics);
+        this.originalNumberOfCandidates = numCandidates;
+    }
+
+    /**
+     * <p>Constructor for a copy of an election in its current state, used by runTieTrial(). The copy has candidates and a ballot store of
+     * its own, so counting it leaves the election as it was, and it writes nothing to the audit file.</p>
+     * @param election the IRVotingSystem to copy
+     * @param tieBreaker TieBreaker for the copy to break ties with
+     */
+    private IRVotingSystem(IRVotingSystem election, TieBreaker tieBreaker) {
+        super();
+        this.candidates = new ArrayList<>();
+        for (Candidate c : election.candidates) {
+            IRCandidate original = (IRCandidate) c;
+            IRCandidate copy = new IRCandidate(original.getName(), original.getParty(), original.getBallotIndex());
+            copy.setInRunning(original.getRunningStatus());
+            copy.addBallots(original.getBallotCount());
+            candidates.add(copy);
+        }
+        this.ballotStore = new IRBallotStore(election.getBallotStore(), candidates);
+        this.numberOfCandidates = election.numberOfCandidates;
+        this.numberOfBallots = election.numberOfBallots;
+        this.originalNumberOfCandidates = election.originalNumberOfCandidates;
+        this.batchElimination = election.batchElimination;
+        this.tieBreaker = tieBreaker;
+        this.audit = Audit.discarding();
+        this.copy = true;
+    }
+
     /**
      * <p>This sends the audit file logs to represent the state of the election at the start, it will write the type of voting, number
      * of candidates, number of ballots, and candidate information to the audit file </p>
      */
     public void auditIntialState() {
-        audit.log("INITIAL STATE OF ELECTION\n");
-        audit.log("-------------------------\n\n");
-        audit.log("Type of voting: IR\n");
-        audit.log("Number of candidates: " + getNumberOfCandidates() + "\n");
-        audit.log("Number of ballots: " + getNumberOfBallots() + "\n");
-        for (int i = 0; i < getNumberOfCandidates(); i++) {
-            double percentage = ((double) candidates.get(i).getBallotCount() / (double) numberOfBallots) * 100;
-            audit.log(candidates.get(i).getName() + " has " + candidates.get(i).getBallotCount() + " ballots, which is " + percentage + "%.\n");
+        int[] invalidated = null;
+        if (fileProcessor != null) {
+            invalidated = new int[] {fileProcessor.getInvalidatedCount(),
+                fileProcessor.getInvalidatedCount(InvalidBallotWriter.Reason.UNDER_RANKED),
+                fileProcessor.getInvalidatedCount(InvalidBallotWriter.Reason.MALFORMED)};
         }
-        audit.log("-------------------------\n\n");
+        audit.log(new AuditEvent.InitialState("IR", numberOfBallots, candidates.subList(0, getNumberOfCandidates()), invalidated, null));
     }
 
     /**
@@ -45,25 +97,26 @@ public class IRVotingSystem extends VotingSystem {
      * @param can the candidate object representing the candidate with the lowest ballot count and it being eliminated.
      */
     public void auditCandidateFallingOut(Candidate can) {
-        audit.log("CANDIDATE REMOVED\n");
-        audit.log("-------------------------\n\n");
-        audit.log(can.getName() + " has the fewest votes with " + can.getBallotCount() + " ballots.\n");
-        audit.log("Their ballots will be redistributed\n");
+        audit.log(new AuditEvent.CandidateEliminated(can));
+    }
+
+    /**
+     * <p>This sends the audit file logs to report several candidates eliminated in the same round, it will write which candidates were removed,
+     * their ballot counts, and the candidate whose count their combined ballots fall short of.</p>
+     * @param group the candidates being eliminated together, fewest ballots first
+     * @param next the candidate with the fewest ballots of those still in the running after the group is removed
+     */
+    public void auditCandidatesFallingOut(List<IRCandidate> group, Candidate next) {
+        audit.log(new AuditEvent.CandidateEliminated(group, next));
     }
 
     /**
      * <p>This sends the audit file information logs containing the baLlot count information of each candidate after a candidate has been eliminated.</p>
      */
     public void auditNewBallotTotals() {
-        audit.log("BALLOT TOTALS AFTER REDISTRIBUTION\n");
-        audit.log("-------------------------\n\n");
-        for (int i = 0; i < originalNumberOfCandidates; i++) {
-            IRCandidate candidate = (IRCandidate) candidates.get(i);
-            if(candidate.getRunningStatus()){
-                double percentage = (double) candidate.getBallotCount() / (double) numberOfBallots * 100;
-                audit.log(candidates.get(i).getName() + " now has " + candidate.getBallotCount() + " ballots, which is " + percentage + "%.\n");
-            }
-            
+        // the totals of every candidate are the bulk of the audit, so they are not even collected unless they will be written
+        if (audit.isLogged(AuditEvent.Level.DETAIL)) {
+            audit.log(new AuditEvent.RoundTotals(candidates, numberOfBallots));
         }
     }
 
@@ -72,56 +125,143 @@ public class IRVotingSystem extends VotingSystem {
      * @param can the candidate object that represents the winner of the election
      */
     public void auditEndState(Candidate can) {
-        audit.log("ELECTION HAS ENDED");
-        audit.log("-------------------------\n\n");
-        double percentage = (double) can.getBallotCount() / (double) numberOfBallots * 100;
-        audit.log(can.getName() + " has won with " + can.getBallotCount() + " votes, which is " + percentage + "%.\n");
+        audit.log(new AuditEvent.SeatAwarded(AuditEvent.SeatAwarded.Kind.WINNER, can, can.getBallotCount(), 1, numberOfBallots));
     }
 
     /**
-     * <p>Used by runElection to periodically check if any of the candidates have ballot totals over 50% of the total ballots, or if there
-     * are less than 3 candidates left.</p>
-     * @return true if a candidate has majority or if there are less than 3 candidates left in running. False if no candidates have reached majority and there are 3 or more candidates left
+     * <p>Used by runElection to periodically check if any of the candidates have ballot totals over 50% of the total ballots. The leader is
+     * kept on top of a heap, so this looks at one candidate and compares whole numbers of ballots.</p>
+     * @return true if a candidate has majority. False if no candidates have reached majority
      */
     public boolean checkMajority() {
-        for (int i = 0; i <  candidates.size(); i++) {
-           double percentage = ((double) (candidates.get(i).getBallotCount())) / (double) numberOfBallots;
-           if (percentage > 0.5){
-                return true;
-           }
-        }
-        return false; // Will fall through if none of the candidates have majority and there are more than 2 candidates remaining
+        updateHeaps();
+        return most.size() > 0 && 2L * most.peekCount() > numberOfBallots;
     }
 
     /**
-     * <p>Iterates through the list of candidates that are still in the running and returns the candidate object with the fewest votes.
-     * Also breaks ties if there are multiple candidates tied for last place. </p>
+     * <p>Returns the running candidate with the fewest votes, which is kept on top of a heap. Also breaks ties if there are multiple running
+     * candidates tied for last place. </p>
      * @return candidate object representing the candidate with the fewest ballots
      */
     public Candidate getLowest(){
-        int lowestValue = Integer.MAX_VALUE;
-        ArrayList<Candidate> lowestCandidates = new ArrayList<>();
-        for (int i = 0; i < candidates.size(); i++) {
-            IRCandidate current = (IRCandidate) candidates.get(i);
-            if ((candidates.get(i).getBallotCount()) < lowestValue && current.getRunningStatus()) { // new lowest value is found
-                lowestValue = candidates.get(i).getBallotCount();
-                lowestCandidates.clear(); // If there were any ties but there is another candidate that is lower, all candidates are cleared
-                lowestCandidates.add(candidates.get(i));
-            }
-            else if ((candidates.get(i).getBallotCount()) == lowestValue){ //tie for lowest
-                lowestCandidates.add(candidates.get(i));
-            }
+        updateHeaps();
+        IntList lowestCandidates = fewest.ties();
+        if (lowestCandidates.size() != 1) {
+            saveTieState();
         }
         numberOfCandidates--;
         if ((lowestCandidates.size()) != 1) {
             int rand = breakTie(lowestCandidates.size()); //randomly choose a number in range of how many candidates tied
-            return lowestCandidates.get(rand);
+            return candidates.get(lowestCandidates.get(rand));
         }
         else{
-            return lowestCandidates.get(0);
+            return candidates.get(lowestCandidates.get(0));
         }
         
     }
+
+    /**
+     * <p>Brings the heaps of running candidates up to date. Ballots read into an IRBallotStore report which candidates gained ballots or were
+     * eliminated, so only those are moved in the heaps. Without a store the heaps are rebuilt from every candidate.</p>
+     */
+    private void updateHeaps() {
+        IRBallotStore store = getBallotStore();
+        if (fewest == null || store == null) {
+            fewest = new CandidateHeap(candidates.size(), false);
+            most = new CandidateHeap(candidates.size(), true);
+            for (int i = 0; i < candidates.size(); i++) {
+                updateHeaps(i);
+            }
+        } else {
+            IntList changed = store.getChanged();
+            for (int i = 0; i < changed.size(); i++) {
+                updateHeaps(changed.get(i));
+            }
+        }
+        if (store != null) {
+            store.clearChanged();
+        }
+    }
+
+    /**
+     * <p>Moves one candidate in the heaps to match its ballot count, or takes it out of them if it is no longer running.</p>
+     * @param index position of the candidate in the candidate list, which is also its ballot index
+     */
+    private void updateHeaps(int index) {
+        IRCandidate current = (IRCandidate) candidates.get(index);
+        if (current.getRunningStatus()) {
+            fewest.update(index, current.getBallotCount());
+            most.update(index, current.getBallotCount());
+        } else {
+            fewest.remove(index);
+            most.remove(index);
+        }
+    }
+
+    /**
+     * <p>Finds the largest group of two or more trailing candidates whose combined ballots are fewer than the ballots of the candidate just
+     * above them. Whatever order they were eliminated in one at a time, none of them could catch up with that candidate, so they would all
+     * be eliminated before it and removing them together does not change the winner. At least two candidates are always left running.</p>
+     * @return the candidates to eliminate, fewest ballots first, followed by the candidate just above them. Empty if no such group exists
+     */
+    public List<IRCandidate> getDefeatedGroup() {
+        ArrayList<IRCandidate> running = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            IRCandidate current = (IRCandidate) candidates.get(i);
+            if (current.getRunningStatus()) {
+                running.add(current);
+            }
+        }
+        running.sort(Comparator.comparingInt(Candidate::getBallotCount));
+        int size = 0;
+        long combined = 0;
+        for (int k = 1; k <= running.size() - 2; k++) {
+            combined += running.get(k - 1).getBallotCount();
+            if (k >= 2 && combined < running.get(k).getBallotCount()) {
+                size = k;
+            }
+        }
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(running.subList(0, size + 1));
+    }
+
+    /**
+     * <p>Turns batch elimination on or off. With it on, each round removes every trailing candidate found by getDefeatedGroup() at once
+     * instead of only the one with the fewest ballots, which gives the same winner in fewer rounds.</p>
+     * @param batchElimination true to eliminate defeated candidates together
+     */
+    public void setBatchElimination(boolean batchElimination) {
+        this.batchElimination = batchElimination;
+    }
+
+    /**
+     * <p>Getter for whether batch elimination is on</p>
+     * @return true if defeated candidates are eliminated together
+     */
+    public boolean getBatchElimination() {
+        return batchElimination;
+    }
+
+    /**
+     * <p>Eliminates a group of defeated candidates in one round. They are all taken out of the running before any ballots move, so a ballot
+     * passes straight over the others in the group to its next candidate that is still running.</p>
+     * @param group the candidates to eliminate
+     * @return the number of ballots that had no next candidate still running
+     */
+    private int removeCandidates(List<IRCandidate> group) {
+        for (IRCandidate can : group) {
+            can.setInRunning(false);
+        }
+        int exhausted = 0;
+        for (IRCandidate can : group) {
+            exhausted += can.removeCandidate();
+        }
+        numberOfCandidates -= group.size();
+        return exhausted;
+    }
+
     /**
      * <p>Main driver method for the election algorithm, it is responsible for keeping a loop of removing the lowest candidate until a candidate 
      * reaches majority or until there are fewer than 3 candidates remaining, and then finding the winner of the election.
@@ -130,40 +270,133 @@ public class IRVotingSystem extends VotingSystem {
      */
     @Override
     public boolean runElection() {
-        IRCandidate lowestCandidate;
-
         //send audit log initial state of election
         auditIntialState();
 
+        winner = count();
+        auditEndState(winner);
+        if (tieBreaker.getDraws() > 0) {
+            audit.log("Ties were broken at random with seed " + tieBreaker.getSeed() + ", run again with --seed " + tieBreaker.getSeed() + " to repeat them.\n");
+        }
+        printResults();
+        audit.close();
+
+        return true;
+    }
+
+    /**
+     * <p>Removes candidates until one has a majority or two are left, and finds the winner. This is the part of runElection that depends on
+     * how ties are broken.</p>
+     * @return the winning candidate
+     */
+    private IRCandidate count() {
+        IRCandidate lowestCandidate;
         while((!checkMajority()) && (numberOfCandidates > 2)){
+            ElectionMetrics.Timer round = metrics.beginRound();
+            if (batchElimination) {
+                List<IRCandidate> group = getDefeatedGroup();
+                if (!group.isEmpty()) {
+                    Candidate next = group.remove(group.size() - 1);
+                    auditCandidatesFallingOut(group, next);
+                    long held = 0;
+                    for (IRCandidate can : group) {
+                        held += can.getBallotCount();
+                    }
+                    long redistribution = metrics.clock();
+                    int exhausted = removeCandidates(group);
+                    redistribution = metrics.clock() - redistribution;
+                    auditNewBallotTotals();
+                    metrics.endRound(round, group, held - exhausted, exhausted, redistribution);
+                    continue;
+                }
+            }
             lowestCandidate = (IRCandidate) getLowest();
-            lowestCandidate.removeCandidate();
+            int held = lowestCandidate.getBallotCount();
+            long redistribution = metrics.clock();
+            int exhausted = lowestCandidate.removeCandidate();
+            redistribution = metrics.clock() - redistribution;
             auditCandidateFallingOut(lowestCandidate);
             auditNewBallotTotals();
+            metrics.endRound(round, Collections.singletonList(lowestCandidate), held - exhausted, exhausted, redistribution);
         }
-        int highestValue = Integer.MIN_VALUE;
-        ArrayList<Candidate> highestCandidates = new ArrayList<>();
-        for (int i = 0; i < candidates.size(); i++) {
-            if ((candidates.get(i).getBallotCount()) > highestValue) { //follows same logic as getLowest()
-                highestValue = candidates.get(i).getBallotCount();
-                highestCandidates.clear();
-                highestCandidates.add(candidates.get(i));
-            }
-            else if ((candidates.get(i).getBallotCount()) == highestValue) {
-                highestCandidates.add(candidates.get(i));
-            }
-        }
+        ElectionMetrics.Timer seats = metrics.begin(ElectionMetrics.Phase.SEATS);
+        updateHeaps();
+        IntList highestCandidates = most.ties(); //follows same logic as getLowest()
+        IRCandidate leader;
         if ((highestCandidates.size()) != 1) { //tie
+            saveTieState();
             int rand = breakTie(highestCandidates.size());
-            winner = (IRCandidate) highestCandidates.get(rand);
+            leader = (IRCandidate) candidates.get(highestCandidates.get(rand));
         } 
         else {
-            winner = (IRCandidate) highestCandidates.get(0);
+            leader = (IRCandidate) candidates.get(highestCandidates.get(0));
         }
-        auditEndState(winner);
-        printResults();
+        metrics.end(seats);
+        return leader;
+    }
 
-        return true;
+    /**
+     * <p>Keeps a copy of the election as it is just before the first tie broken at random, since the count up to that point is the same
+     * however ties are broken.</p>
+     */
+    private void saveTieState() {
+        if (tieState == null && !copy && getBallotStore() != null) {
+            tieState = new IRVotingSystem(this, null);
+        }
+    }
+
+    /**
+     * <p>Counts the election again from just before its first tie with another TieBreaker, without changing this election or writing to
+     * the audit file. Each call copies the state kept before the first tie, which takes time in proportion to the groups of ballots held
+     * by candidates still running then. If no tie was broken at random the winner is certain and is returned as it is.</p>
+     * @param tieBreaker TieBreaker used for this run only
+     * @return IntList holding the ballot index of the winner
+     */
+    public IntList runTieTrial(TieBreaker tieBreaker) {
+        if (tieState == null && this.tieBreaker.getDraws() > 0) {
+            throw new IllegalStateException("Ties can only be simulated for IR ballots kept in an IRBallotStore");
+        }
+        IntList won = new IntList(1);
+        if (tieState == null) {
+            won.add(winner.getBallotIndex());
+        } else {
+            won.add(new IRVotingSystem(tieState, tieBreaker).count().getBallotIndex());
+        }
+        return won;
+    }
+
+    public void setTieBreaker(TieBreaker tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    public TieBreaker getTieBreaker() {
+        return tieBreaker;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    /**
+     * <p>Getter for the name of the winner, once the election has been run.</p>
+     * @return String array holding the winner's name, empty before runElection()
+     */
+    public String[] getWinners() {
+        if (winner == null) {
+            return new String[0];
+        }
+        return new String[] {winner.getName()};
+    }
+
+    /**
+     * <p>Getter for the store holding the ballots, the one of the FileProcessor unless this is a copy made by runTieTrial()</p>
+     * @return IRBallotStore of the election, or null if the ballots are not kept in one
+     */
+    private IRBallotStore getBallotStore() {
+        if (ballotStore == null && fileProcessor != null) {
+            return fileProcessor.getBallotStore();
+        }
+        return ballotStore;
     }
 
     /**
@@ -174,8 +407,7 @@ public class IRVotingSystem extends VotingSystem {
      */
     public int breakTie(int numOfCandidates) {
         // Pick a random number within the range 0 to numOfCandidates
-        Random rand = new Random();
-        return rand.nextInt(numOfCandidates);
+        return tieBreaker.pick(numOfCandidates);
     }
 
     /**
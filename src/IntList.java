@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+/**
+* IntList is a growable list of primitive ints. It is used in place of an ArrayList of Integer or of ballot objects
+* where only an index needs to be stored, so adding an element never allocates a wrapper object.
+*/
+public class IntList {
+    private int[] values;
+    private int size;
+
+    /**
+    * <p> Creates an empty list. </p>
+    * @param  initialCapacity number of elements the list can hold before it has to grow.
+    */
+    public IntList(int initialCapacity) {
+        values = new int[Math.max(1, initialCapacity)];
+        size = 0;
+    }
+
+    /**
+    * <p> Adds a value to the end of the list, doubling the backing array if it is full. </p>
+    * @param  value int to be added.
+    */
+    public void add(int value) {
+        if(size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+    * <p> Adds every value of another list to the end of this one, in order. </p>
+    * @param  other IntList whose values are added.
+    */
+    public void addAll(IntList other) {
+        if(size + other.size > values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+    * <p> Getter for one element of the list. </p>
+    * @param  i index of the element.
+    * @return int stored at index i.
+    */
+    public int get(int i) {
+        if(i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        }
+        return values[i];
+    }
+
+    /**
+    * <p> Getter for the number of elements in the list. </p>
+    * @return int representing the size of the list.
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+    * <p> Sorts the elements into ascending order. </p>
+    */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+    * <p> Removes every element while keeping the backing array for reuse. </p>
+    */
+    public void clear() {
+        size = 0;
+    }
+}
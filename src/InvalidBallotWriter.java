@@ -0,0 +1,135 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+* InvalidBallotWriter collects the IR ballots that are thrown out while the election file is read and writes them to the
+* invalidated ballot file in large batches. Each record is the ballot line followed by the reason it was invalidated. Only
+* whole records are written at a time, so several writers appending to the same file never split each other's lines.
+*/
+public class InvalidBallotWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Name of the invalidated ballot file in the directory the election writes to
+     */
+    public static final String FILE_NAME = "invalidated.csv";
+
+    /**
+     * Why a ballot was invalidated, written as the last field of its record
+     */
+    public enum Reason {
+        /** the ballot ranks fewer than half of the candidates */
+        UNDER_RANKED,
+        /** the ballot has a rank or a field that does not match any candidate, or gives nobody the first rank */
+        MALFORMED
+    }
+
+    private OutputStream stream;
+    private byte[] buffer;
+    private int buffered;
+    private int[] counts;
+
+    /**
+    * <p> Opens the invalidated ballot file for appending. </p>
+    * @param  file a File object for the invalidated ballot file.
+    */
+    public InvalidBallotWriter(File file) {
+        try {
+            stream = new FileOutputStream(file, true);
+        } catch (IOException execpt) {
+            System.out.println("ERROR: Unable to open file for writing correctly.");
+        }
+        buffer = new byte[BUFFER_SIZE];
+        buffered = 0;
+        counts = new int[Reason.values().length];
+    }
+
+    /**
+    * <p> Adds an invalidated ballot to the batch, writing the batch out first if the record does not fit. </p>
+    * @param  line       bytes of the ballot line.
+    * @param  lineLength number of bytes of line that belong to the ballot.
+    * @param  reason     why the ballot was invalidated.
+    */
+    public void write(byte[] line, int lineLength, Reason reason) {
+        counts[reason.ordinal()]++;
+        byte[] suffix = reasonBytes(reason);
+        int recordLength = lineLength + suffix.length;
+        if(buffered + recordLength > buffer.length) {
+            flush();
+            if(recordLength > buffer.length) {
+                buffer = new byte[recordLength];
+            }
+        }
+        System.arraycopy(line, 0, buffer, buffered, lineLength);
+        System.arraycopy(suffix, 0, buffer, buffered + lineLength, suffix.length);
+        buffered += recordLength;
+    }
+
+    /**
+    * <p> Writes out every buffered record in one call. </p>
+    */
+    public void flush() {
+        if(buffered == 0 || stream == null) {
+            buffered = 0;
+            return;
+        }
+        try {
+            stream.write(buffer, 0, buffered);
+        } catch (IOException execp) {
+            System.out.println("ERROR: Unable to write invalidated ballots to file.");
+        }
+        buffered = 0;
+    }
+
+    /**
+    * <p> Writes out the remaining records and closes the file. </p>
+    */
+    @Override
+    public void close() {
+        flush();
+        if(stream != null) {
+            try {
+                stream.close();
+            } catch (IOException execp) {
+                System.out.println("ERROR: Unable to close invalidated ballot file.");
+            }
+            stream = null;
+        }
+    }
+
+    /**
+    * <p> Getter for the total number of ballots invalidated. </p>
+    * @return int representing how many ballots have been written.
+    */
+    public int getCount() {
+        int total = 0;
+        for(int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+    * <p> Getter for the number of ballots invalidated for one reason. </p>
+    * @param  reason the reason to count.
+    * @return int representing how many ballots were invalidated for that reason.
+    */
+    public int getCount(Reason reason) {
+        return counts[reason.ordinal()];
+    }
+
+    private static final byte[][] REASON_BYTES = new byte[Reason.values().length][];
+    static {
+        for(Reason reason : Reason.values()) {
+            REASON_BYTES[reason.ordinal()] = ("," + reason.name() + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+    * <p> Getter for the bytes ending a record with the given reason. </p>
+    * @param  reason why the ballot was invalidated.
+    * @return bytes of a comma, the reason name and a newline.
+    */
+    private static byte[] reasonBytes(Reason reason) {
+        return REASON_BYTES[reason.ordinal()];
+    }
+}
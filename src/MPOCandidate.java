@@ -13,6 +13,14 @@ public class MPOCandidate extends Candidate{
         ballotCount++;
     }
 
+    /**
+     * increases ballot count by the given number of votes, used when votes were tallied in bulk
+     * @param votes number of votes to add
+     */
+    public void addVotes(int votes) {
+        ballotCount += votes;
+    }
+
     public String getName() {
         return super.name;
     }
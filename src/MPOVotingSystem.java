@@ -1,5 +1,6 @@
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.io.*;
 
 /**
@@ -8,12 +9,13 @@ import java.io.*;
  * 
  * @author Perrie Gryniewicz, Logan Watters, Matthew Johnson
  */
-public class MPOVotingSystem extends VotingSystem{
+public class MPOVotingSystem extends VotingSystem implements TieBreaking, Audited {
     private int seatsAvailable;
     private int numSeats;
-    private int numSeatsAwarded = 1;
     private ArrayList<MPOCandidate> winners;
     private ArrayList<Candidate> allCandidates;
+    private TieBreaker tieBreaker = new TieBreaker();
+    private ElectionMetrics metrics = ElectionMetrics.none();
 
     /**
      * <p> Constructor for MPOVotingSystem class </p>
@@ -31,6 +33,29 @@ public class MPOVotingSystem extends VotingSystem{
         allCandidates = new ArrayList<>(c);
     }
 
+    /**
+     * <p> Constructor for MPOVotingSystem class whose ballots have already been read by a FileProcessor </p>
+     * @param c ArrayList of candidates in the running in this election
+     * @param numCandidates number of candidates in the running
+     * @param numBallots number of ballots cast
+     * @param fileProcessor FileProcessor that has read the ballots of this election
+     * @param numSeats number of seats available to be won
+     */
+    public MPOVotingSystem(ArrayList<Candidate> c, int numCandidates, int numBallots, FileProcessor fileProcessor, int numSeats) {
+        super();
+        this.candidates = c;
+        this.numberOfCandidates = numCandidates;
+        this.numberOfBallots = numBallots;
+        this.fileProcessor = fileProcessor;
+        this.metrics = fileProcessor.getMetrics();
+        this.audit = new Audit(fileProcessor.getOutputFile(Audit.FILE_NAME));
+        this.audit.setMetrics(metrics);
+        this.seatsAvailable = numSeats;
+        this.numSeats = numSeats;
+        winners = new ArrayList<MPOCandidate>();
+        allCandidates = new ArrayList<>(c);
+    }
+
     /**
      * <p>Main driver method for the election algorithm, it is responsible for handing out all seats to candidates in order of 
      * poplarity. It is also responsible for calls to the audit methods and printing basic output to the terminal.</p>
@@ -39,80 +64,98 @@ public class MPOVotingSystem extends VotingSystem{
     @Override
     public boolean runElection() {
         winners.clear();
-        int maxVotes = 0;
-        MPOCandidate tempWinner = new MPOCandidate("", "", 0);
-        int seatsAllocated = 0; 
-        ArrayList<MPOCandidate> highestCandidates = new ArrayList<MPOCandidate>();
-        ArrayList<Candidate> candidatesNew =  new ArrayList<Candidate>();
-        ArrayList<Candidate> candidateCopy = super.getCandidates();
-        for(int i = 0; i<super.getNumberOfCandidates(); i++) {
-            candidatesNew.add(candidateCopy.get(i));
+        ElectionMetrics.Timer seats = metrics.begin(ElectionMetrics.Phase.SEATS);
+        int candidatesToSeat = Math.min(seatsAvailable, super.getNumberOfCandidates());
+        for(MPOCandidate winner : selectTopCandidates(candidatesToSeat, tieBreaker)) {
+            winners.add(winner);
+            auditSeatAwarded(winner, winners.size());
         }
-
-        while(seatsAllocated != seatsAvailable) {
-            highestCandidates.clear();
-            maxVotes = 0; 
-            for (int i = 0; i<super.getNumberOfCandidates()-seatsAllocated; i++) {
-                MPOCandidate curr = (MPOCandidate) candidatesNew.get(i);
-                if (curr.getBallotCount() > maxVotes) {
-                    maxVotes = curr.getBallotCount();
-                    tempWinner = curr;
-                    highestCandidates.clear();
-                    highestCandidates.add(curr);
-                }
-                else if (curr.getBallotCount() == maxVotes) {
-                    highestCandidates.add((curr));
-                }
-            }
-            if(highestCandidates.size() != 0) {
-                int rand = breakTie(highestCandidates.size());
-                winners.add(highestCandidates.get(rand));
-                seatsAllocated++;
-                auditSeatAwarded(highestCandidates.get(rand));
-                candidatesNew.remove(highestCandidates.get(rand));
-                highestCandidates.clear();
-            }
-            else{
-                winners.add(tempWinner);
-                candidatesNew.remove(tempWinner);
-                seatsAllocated++;
-                highestCandidates.clear();
-            }
+        metrics.end(seats);
+        if(tieBreaker.getDraws() > 0) {
+            audit.log("Ties were broken at random with seed " + tieBreaker.getSeed() + ", run again with --seed " + tieBreaker.getSeed() + " to repeat them.\n\n");
         }
         audit.log("ELECTION RESULTS: \n");
         System.out.println("\nElection results:");
         System.out.println("---------------------------");
         printResults();
+        audit.close();
         return true; 
     }
 
+    /**
+     * <p>Helper function for runElection(), finds the candidates that win seats, in the order the seats are awarded. A bounded heap
+     * of the k leading candidates finds the fewest votes that still wins a seat, then one more pass collects every candidate above
+     * that and every candidate tied on it. Only when more candidates are tied for the last seats than there are seats left are they
+     * shuffled, and the winners are one random draw from them. Candidates tied on votes who all win are seated in ballot order, so a
+     * tie that cannot change who is seated draws nothing. This takes O(C log k) for C candidates and k seats, where awarding the
+     * seats one at a time rescanned every remaining candidate for each seat.</p>
+     * @param k number of seats to award, at most the number of candidates.
+     * @param tieBreaker TieBreaker for candidates tied for the last seats.
+     * @return ArrayList of the k winning candidates, most votes first.
+     */
+    private ArrayList<MPOCandidate> selectTopCandidates(int k, TieBreaker tieBreaker) {
+        ArrayList<MPOCandidate> seated = new ArrayList<MPOCandidate>(k);
+        if(k == 0) {
+            return seated;
+        }
+        PriorityQueue<MPOCandidate> leading = new PriorityQueue<MPOCandidate>(k, Comparator.comparingInt(MPOCandidate::getBallotCount));
+        for(int i = 0; i<super.getNumberOfCandidates(); i++) {
+            MPOCandidate curr = (MPOCandidate) candidates.get(i);
+            if(leading.size() < k) {
+                leading.add(curr);
+            } else if(curr.getBallotCount() > leading.peek().getBallotCount()) {
+                leading.poll();
+                leading.add(curr);
+            }
+        }
+        int lowestWinning = leading.peek().getBallotCount();
+
+        ArrayList<MPOCandidate> boundary = new ArrayList<MPOCandidate>();
+        for(int i = 0; i<super.getNumberOfCandidates(); i++) {
+            MPOCandidate curr = (MPOCandidate) candidates.get(i);
+            if(curr.getBallotCount() > lowestWinning) {
+                seated.add(curr);
+            } else if(curr.getBallotCount() == lowestWinning) {
+                boundary.add(curr);
+            }
+        }
+        // stable, so candidates with equal votes stay in ballot order
+        seated.sort(Comparator.comparingInt(MPOCandidate::getBallotCount).reversed());
+        if(boundary.size() > k - seated.size()) {
+            tieBreaker.shuffle(boundary);
+        }
+        seated.addAll(boundary.subList(0, k - seated.size()));
+        return seated;
+    }
+
     /**
      * <p>Helper function for runElection(), called when a seat is awarded, sends this info to audit object to be printed in audit file.</p>
      * @param can the candidate object that is awarded the seat.
+     * @param seat the position of the seat, from 1 for the candidate with the most votes.
      */
-    public void auditSeatAwarded(Candidate can){
-        audit.log("SEAT FILLED\n");
-        audit.log("-------------------------\n");
-        audit.log(can.getName() + " had the most votes with " + can.getBallotCount() + " and has been awarded seat " + numSeatsAwarded + ".\n\n");
+    public void auditSeatAwarded(Candidate can, int seat){
+        audit.log(new AuditEvent.SeatAwarded(AuditEvent.SeatAwarded.Kind.MOST_VOTES, can, can.getBallotCount(), seat, numberOfBallots));
     }
 
     /**
      * <p>This method is used by runElection to print end of election results to the terminal for the user to have quick results. It will print
-     * the name of the candidate(s) that won the seat or seats, as well as the number of ballots and ballot percentage that candidate had.</p>
+     * the name of the candidate(s) that won the seat or seats, as well as the number of ballots and ballot percentage that candidate had.
+     * With more seats than candidates every candidate is seated once and the seats left over are reported as unfilled.</p>
      */
     @Override
     public void printResults(){
-        if (numSeats == 1){
+        int seated = winners.size();
+        if (seated == 1){
             audit.log(winners.get(0).getName() + " has won the election with " + winners.get(0).getBallotCount() + " votes!\n");
             System.out.println(winners.get(0).getName() + " has won the election with " + winners.get(0).getBallotCount() + " votes!");
         }
-        else if (numSeats == 2){
+        else if (seated == 2){
             audit.log(winners.get(0).getName() + " and " + winners.get(1).getName() + " each won seats with " + winners.get(0).getBallotCount() + " and " + winners.get(1).getBallotCount() + " votes respectively.\n");
             System.out.println(winners.get(0).getName() + " and " + winners.get(1).getName() + " each won seats with " + winners.get(0).getBallotCount() + " and " + winners.get(1).getBallotCount() + " votes respectively.");
         }
-        else{
-            for(int i = 0; i < numSeats; i++) {
-                if(i == (numSeats -1)){
+        else if (seated > 2){
+            for(int i = 0; i < seated; i++) {
+                if(i == (seated -1)){
                     audit.log("and " + winners.get(i).getName() + " won seats");
                     System.out.println("and " + winners.get(i).getName() + " won seats");
                 } else {
@@ -121,6 +164,11 @@ public class MPOVotingSystem extends VotingSystem{
                 }
             }
         }
+        if (seated < numSeats){
+            String unfilled = (numSeats - seated) + " of " + numSeats + " seats were left unfilled, there are only " + seated + " candidates.";
+            audit.log("\n" + unfilled + "\n");
+            System.out.println(unfilled);
+        }
         System.out.println("\nVote Breakdown:");
         System.out.println("---------------------------");
         for(int i = 0; i < allCandidates.size(); i++){
@@ -138,8 +186,33 @@ public class MPOVotingSystem extends VotingSystem{
      */
     public int breakTie(int numOfCandidates) {
         // Pick a random number within the range 0 to numOfCandidates
-        Random rand = new Random();
-        return rand.nextInt(numOfCandidates);
+        return tieBreaker.pick(numOfCandidates);
+    }
+
+    public void setTieBreaker(TieBreaker tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    public TieBreaker getTieBreaker() {
+        return tieBreaker;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    /**
+     * <p>Picks the winners again with another TieBreaker, without awarding the seats or writing to the audit file.</p>
+     * @param tieBreaker TieBreaker used for this run only.
+     * @return IntList of the ballot indexes of the candidates who would win seats.
+     */
+    public IntList runTieTrial(TieBreaker tieBreaker) {
+        int candidatesToSeat = Math.min(seatsAvailable, super.getNumberOfCandidates());
+        IntList seated = new IntList(Math.max(1, candidatesToSeat));
+        for(MPOCandidate winner : selectTopCandidates(candidatesToSeat, tieBreaker)) {
+            seated.add(winner.getBallotIndex());
+        }
+        return seated;
     }
 
     public String[] getWinners() {
@@ -0,0 +1,130 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* MultiFileProcessor reads an election that has been split across several files with identical headers, such as one
+* file per precinct. Every file is read by its own HeaderProcessor and FileProcessor on a bounded thread pool, the
+* headers are checked against each other, and the per-file results are merged in file order into the first file's
+* candidates so one VotingSystem can run over all of the ballots.
+*/
+public class MultiFileProcessor {
+    private List<File> files;
+    private int threads;
+    private File outputDir;
+    private HeaderProcessor headerProcessor;
+    private ElectionMetrics metrics;
+
+    /**
+    * <p> Creates a MultiFileProcessor that reads up to one file per available processor at a time. </p>
+    * @param  files list of election files making up the contest, each with the same header.
+    */
+    public MultiFileProcessor(List<File> files) {
+        this(files, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+    * <p> Creates a MultiFileProcessor that reads up to the given number of files at a time. </p>
+    * @param  files   list of election files making up the contest, each with the same header.
+    * @param  threads an int representing the most files to read at once.
+    */
+    public MultiFileProcessor(List<File> files, int threads) {
+        if(files.isEmpty()) {
+            throw new IllegalArgumentException("No election files given");
+        }
+        this.files = new ArrayList<>(files);
+        this.threads = Math.max(1, Math.min(threads, files.size()));
+    }
+
+    /**
+    * <p> Creates a MultiFileProcessor whose audit and invalidated ballot files go in the given directory. </p>
+    * @param  files     list of election files making up the contest, each with the same header.
+    * @param  outputDir directory the files written while counting the contest go in, null for the working directory.
+    */
+    public MultiFileProcessor(List<File> files, File outputDir) {
+        this(files);
+        this.outputDir = outputDir;
+    }
+
+    /**
+    * <p> Sets the metrics every file of the contest is timed with, before the files are read. </p>
+    * @param  metrics ElectionMetrics of the contest, or null for each file to be timed on its own.
+    */
+    public void setMetrics(ElectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+    * <p> Lists the election files in a directory in name order, skipping hidden files and subdirectories. </p>
+    * @param  directory directory holding one election file per precinct.
+    * @return List of the files in the directory.
+    */
+    public static List<File> listElectionFiles(File directory) {
+        File[] entries = directory.listFiles(f -> f.isFile() && !f.isHidden());
+        if(entries == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(entries);
+        return new ArrayList<>(Arrays.asList(entries));
+    }
+
+    /**
+    * <p> Reads every file concurrently, checks that all headers describe the same contest, and merges the ballots. </p>
+    * @return VotingSystem object for the whole contest, with the ballots of every file counted.
+    * @throws FileNotFoundException if one of the files does not exist.
+    * @throws IllegalArgumentException if a file's header does not match the first file's.
+    */
+    public VotingSystem parseFiles() throws FileNotFoundException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<HeaderProcessor> headers = new ArrayList<>();
+        ArrayList<FileProcessor> processors = new ArrayList<>();
+        try {
+            ArrayList<Future<FileProcessor>> results = new ArrayList<>();
+            for(File file : files) {
+                HeaderProcessor header = new HeaderProcessor(file, outputDir);
+                if(metrics != null) {
+                    header.setMetrics(metrics);
+                }
+                headers.add(header);
+                // the files are the unit of parallelism, so each one is tallied on a single thread
+                results.add(pool.submit(() -> new FileProcessor(header, header.openBallots(), 1)));
+            }
+            for(Future<FileProcessor> result : results) {
+                processors.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading election files", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof FileNotFoundException) {
+                throw (FileNotFoundException) e.getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to read election files", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        headerProcessor = headers.get(0);
+        int totalBallots = headerProcessor.getNumBallots();
+        for(int i = 1; i<headers.size(); i++) {
+            HeaderProcessor header = headers.get(i);
+            if(!headerProcessor.sameContest(header)) {
+                throw new IllegalArgumentException("Header of " + files.get(i) + " does not match " + files.get(0));
+            }
+            totalBallots += header.getNumBallots();
+            processors.get(0).addAll(processors.get(i));
+        }
+        return headerProcessor.makeVotingSystem(processors.get(0), totalBallots);
+    }
+
+    /**
+    * <p> Getter for the header processor of the first file, whose candidates hold the merged results. </p>
+    * @return HeaderProcessor of the first file, or null before parseFiles() has been called.
+    */
+    public HeaderProcessor getHeaderProcessor() {
+        return headerProcessor;
+    }
+}
@@ -21,6 +21,14 @@ class OPLCandidate extends Candidate {
         ballotCount++;
     }
 
+    /**
+     * increases ballot count by the given number of votes, used when votes were tallied in bulk
+     * @param votes number of votes to add
+     */
+    public void addVotes(int votes) {
+        ballotCount += votes;
+    }
+
     /**
     * <p> Retrieve the number of ballots currently allocated to the candidate. </p>
     * @return  ballotCount an int representing how many ballots the candidate currently has allocated to candidate.
@@ -45,30 +45,48 @@ class OPLParty implements Comparable<OPLParty> {
     /**
      * based on how many seats the party wins in the first round,
      * seat the top candidates into the winners
-     * @param quota represents how many votes it takes to win one seat in the first round
+     * @param numToSeat how many whole quotas of votes the party has, at most its number of candidates
+     * @param votesLeft the party's votes beyond its whole quotas, used for the second round
+     * @param numBallots how many ballots in the election
      * @param winners list to add winners to
      * @param audit allows us to log changes to audit file
      */
-    public void seatFirstRound(int quota, ArrayList<OPLCandidate> winners, Audit audit) {
-        int numToSeat = totalVotes / quota;
-        votesLeft = totalVotes % quota;
+    public void seatFirstRound(int numToSeat, int votesLeft, int numBallots, ArrayList<OPLCandidate> winners, Audit audit) {
+        this.votesLeft = votesLeft;
         for(nextInLine = 0; nextInLine < numToSeat; nextInLine++) {
             OPLCandidate c = candidates.get(nextInLine);
             winners.add(c);
-            audit.log(c.getName() + " has been seated for the " + name + " party.\n");
+            audit.log(new AuditEvent.SeatAwarded(AuditEvent.SeatAwarded.Kind.PARTY_SEAT, c, c.getBallotCount(), winners.size(), numBallots));
+            numSeats++;
+        }
+    }
+
+    /**
+     * seats the party's top candidates when its seats were decided by an ApportionmentMethod
+     * @param numToSeat how many seats the party won
+     * @param numBallots how many ballots in the election
+     * @param winners list to add winners to
+     * @param audit allows us to log changes to audit file
+     */
+    public void seat(int numToSeat, int numBallots, ArrayList<OPLCandidate> winners, Audit audit) {
+        for(nextInLine = 0; nextInLine < numToSeat; nextInLine++) {
+            OPLCandidate c = candidates.get(nextInLine);
+            winners.add(c);
+            audit.log(new AuditEvent.SeatAwarded(AuditEvent.SeatAwarded.Kind.PARTY_SEAT, c, c.getBallotCount(), winners.size(), numBallots));
             numSeats++;
         }
     }
 
     /**
      * based on how many votes are remaining, seat another candidate from the party
+     * @param numBallots how many ballots in the election
      * @param winners list for candidate to be added to
      * @param audit allows us to log activity to audit file
      */
-    public void seatSecondRound(ArrayList<OPLCandidate> winners, Audit audit) {
+    public void seatSecondRound(int numBallots, ArrayList<OPLCandidate> winners, Audit audit) {
         OPLCandidate c = candidates.get(nextInLine);
         winners.add(c);
-        audit.log(c.getName() + " was seated for the " + name + " party with their " + votesLeft + " remaining votes.\n");
+        audit.log(new AuditEvent.SeatAwarded(AuditEvent.SeatAwarded.Kind.PARTY_REMAINDER, c, votesLeft, winners.size(), numBallots));
     }
 
     /**
@@ -104,6 +122,14 @@ class OPLParty implements Comparable<OPLParty> {
         return votesLeft;
     }
 
+    public OPLCandidate getCandidate(int rank) {
+        return candidates.get(rank);
+    }
+
+    public int getNumCandidates() {
+        return candidates.size();
+    }
+
     public int getNumSeats() {
         return numSeats;
     }
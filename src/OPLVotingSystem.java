@@ -7,11 +7,14 @@ import java.util.*;
  * Object representing an OPLVotingSystem that determines the winners of the election
  * @author Perrie Gryniewicz, Bek Allenson
  */
-class OPLVotingSystem extends VotingSystem {
+class OPLVotingSystem extends VotingSystem implements TieBreaking, Audited {
     private int numSeatsAvailable;
     private HashMap<String, OPLParty> parties;
     private ArrayList<OPLCandidate> winners;
     private Audit audit;
+    private ApportionmentMethod apportionmentMethod;
+    private TieBreaker tieBreaker = new TieBreaker();
+    private ElectionMetrics metrics = ElectionMetrics.none();
 
     /**
      * Constructor
@@ -29,74 +32,210 @@ class OPLVotingSystem extends VotingSystem {
         this.audit = new Audit();
     }
 
+    /**
+     * Constructor for an election whose ballots have already been read by a FileProcessor
+     * @param c list of candidates
+     * @param numCandidates how many candidates in the election
+     * @param numBallots how many ballots in election
+     * @param fileProcessor FileProcessor that has read the ballots of this election
+     * @param numSeats how many seats are to be allocated
+     */
+    public OPLVotingSystem(ArrayList<Candidate> c, int numCandidates, int numBallots, FileProcessor fileProcessor, int numSeats) {
+        super();
+        this.candidates = c;
+        this.numberOfCandidates = numCandidates;
+        this.numberOfBallots = numBallots;
+        this.fileProcessor = fileProcessor;
+        this.numSeatsAvailable = numSeats;
+        this.winners = new ArrayList<>();
+        this.parties = new HashMap<>();
+        this.metrics = fileProcessor.getMetrics();
+        this.audit = new Audit(fileProcessor.getOutputFile(Audit.FILE_NAME));
+        this.audit.setMetrics(metrics);
+    }
+
     /**
      * runs election, called by Election class
      * @return true if no errors, false if there were errors
      */
     public boolean runElection() {
         if(numberOfBallots != 0) {
-            int quota = numberOfBallots / numSeatsAvailable;
-
-            for(Candidate c : candidates) {
-                String partyName = c.getParty();
-                OPLParty p = null;
-                if(parties.containsKey(partyName)) {
-                    p = parties.get(partyName);
-                } else {
-                    p = new OPLParty(partyName);
-                    parties.put(partyName, p);
-                }
-                p.addCandidate((OPLCandidate) c);
-            }
-
+            buildParties();
             auditInitialState();
 
-            ArrayList<OPLParty> partiesList = new ArrayList<>();
-            for(OPLParty p : parties.values()) {
-                p.sortCandidates();
-                p.seatFirstRound(quota, winners, audit);
-                partiesList.add(p);
+            ElectionMetrics.Timer seats = metrics.begin(ElectionMetrics.Phase.SEATS);
+            if(apportionmentMethod != null) {
+                seatByMethod();
+                metrics.end(seats);
+                auditTieBreaks();
+                printResults();
+                audit.close();
+                return true;
             }
-            audit.log("\n");
 
-            int seatsLeft = numSeatsAvailable - winners.size();
-            Collections.sort(partiesList, Collections.reverseOrder());
+            ArrayList<OPLParty> partiesList = new ArrayList<>(parties.values());
+            IntList remainders = new IntList(numSeatsAvailable);
+            new HareApportionment().apportion(partiesList, numSeatsAvailable, tieBreaker, remainders);
+            long quota = HareApportionment.quota(partiesList, numSeatsAvailable);
+            int seatsLeft = numSeatsAvailable;
+            for(OPLParty p : partiesList) {
+                int numToSeat = HareApportionment.wholeQuotas(p, quota);
+                p.seatFirstRound(numToSeat, HareApportionment.votesLeft(p, quota), numberOfBallots, winners, audit);
+                seatsLeft -= numToSeat;
+            }
+            audit.log("\n");
 
             auditAfterFirstRound(seatsLeft);
 
             auditFinalResults();
-            ArrayList<OPLParty> tiedParties = new ArrayList<>();
-            tiedParties.add(partiesList.get(0));
-            partiesList.remove(0);
-            while(seatsLeft > 0) {
-                if(partiesList.isEmpty() || partiesList.get(0).compareTo(tiedParties.get(0)) != 0) {
-                    OPLParty randomParty = selectRandomParty(tiedParties);
-                    randomParty.seatSecondRound(winners, audit);
-                    seatsLeft--;
-                }
-                if(!partiesList.isEmpty()) {
-                    if(tiedParties.isEmpty() || partiesList.get(0).compareTo(tiedParties.get(0)) == 0) {
-                        tiedParties.add(partiesList.get(0));
-                        partiesList.remove(0);
-                    }
-                }
+            for(int i = 0; i<remainders.size(); i++) {
+                partiesList.get(remainders.get(i)).seatSecondRound(numberOfBallots, winners, audit);
             }
+            if(remainders.size() < seatsLeft) {
+                audit.log("Every party with a candidate left has had a remainder seat, " + (seatsLeft - remainders.size()) + " seat(s) are left empty.\n");
+            }
+            metrics.end(seats);
+            auditTieBreaks();
 
             printResults();
+            audit.close();
             return true;
         }
         else{
             System.out.println("No ballots. Therefore, no results.");
+            audit.close();
             return true;
         }
     }
 
-    public OPLParty selectRandomParty(ArrayList<OPLParty> tiedParties) {
-        Random rand = new Random();
-        int index = rand.nextInt(tiedParties.size());
-        OPLParty party = tiedParties.get(index);
-        tiedParties.remove(index);
-        return party;
+    /**
+     * groups the candidates into their parties and sorts each party's candidates by votes, most first. Done once, so the
+     * parties can be apportioned by several methods before or after the election is run
+     */
+    private void buildParties() {
+        if(!parties.isEmpty()) {
+            return;
+        }
+        for(Candidate c : candidates) {
+            String partyName = c.getParty();
+            OPLParty p = null;
+            if(parties.containsKey(partyName)) {
+                p = parties.get(partyName);
+            } else {
+                p = new OPLParty(partyName);
+                parties.put(partyName, p);
+            }
+            p.addCandidate((OPLCandidate) c);
+        }
+        for(OPLParty p : parties.values()) {
+            p.sortCandidates();
+        }
+    }
+
+    /**
+     * seats every party's top candidates using the seats apportionmentMethod gives it, in place of the two Hare rounds
+     */
+    private void seatByMethod() {
+        ArrayList<OPLParty> partiesList = new ArrayList<>(parties.values());
+        int[] seats = apportionmentMethod.apportion(partiesList, numSeatsAvailable, tieBreaker);
+        int seated = 0;
+        audit.log("SEATS ALLOCATED BY " + apportionmentMethod.getName().toUpperCase() + "\n");
+        audit.log("-------------------------\n\n");
+        for(int i = 0; i<partiesList.size(); i++) {
+            audit.log(partiesList.get(i).getName() + " has been allocated " + seats[i] + " seat(s).\n");
+            seated += seats[i];
+        }
+        if(seated < numSeatsAvailable) {
+            audit.log("Every party has run out of candidates, " + (numSeatsAvailable - seated) + " seat(s) are left empty.\n");
+        }
+        audit.log("-------------------------\n\n");
+        auditFinalResults();
+        for(int i = 0; i<partiesList.size(); i++) {
+            partiesList.get(i).seat(seats[i], numberOfBallots, winners, audit);
+        }
+    }
+
+    /**
+     * works out how many seats each party would win under a method, without seating anyone or writing to the audit file.
+     * Used to compare methods over one tally
+     * @param method the apportionment method to use
+     * @return map from party name to the number of seats it would win
+     */
+    public LinkedHashMap<String, Integer> apportion(ApportionmentMethod method) {
+        buildParties();
+        ArrayList<OPLParty> partiesList = new ArrayList<>(parties.values());
+        int[] seats = method.apportion(partiesList, numSeatsAvailable, tieBreaker);
+        LinkedHashMap<String, Integer> result = new LinkedHashMap<>();
+        for(int i = 0; i<partiesList.size(); i++) {
+            result.put(partiesList.get(i).getName(), seats[i]);
+        }
+        return result;
+    }
+
+    /**
+     * sets the method used to decide how many seats each party wins. Null, the default, runs the Hare quota with largest
+     * remainder in two audited rounds
+     * @param method the apportionment method to use, or null for the default
+     */
+    public void setApportionmentMethod(ApportionmentMethod method) {
+        this.apportionmentMethod = method;
+    }
+
+    public ApportionmentMethod getApportionmentMethod() {
+        return apportionmentMethod;
+    }
+
+    public void setTieBreaker(TieBreaker tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    public TieBreaker getTieBreaker() {
+        return tieBreaker;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    /**
+     * gets the names of the seated candidates in the order they were seated
+     * @return String array of the winners' names, empty before runElection()
+     */
+    public String[] getWinners() {
+        String[] winnersString = new String[winners.size()];
+        for(int i = 0; i<winners.size(); i++) {
+            winnersString[i] = winners.get(i).getName();
+        }
+        return winnersString;
+    }
+
+    /**
+     * apportions the seats again with another TieBreaker. With no method set this is the same HareApportionment the two
+     * rounds of runElection seat from, so a trial can only differ from the count where a tie was drawn
+     * @param tieBreaker TieBreaker used for this run only
+     * @return ballot indexes of the candidates who would be seated
+     */
+    public IntList runTieTrial(TieBreaker tieBreaker) {
+        buildParties();
+        ArrayList<OPLParty> partiesList = new ArrayList<>(parties.values());
+        IntList seated = new IntList(numSeatsAvailable);
+        ApportionmentMethod method = apportionmentMethod == null ? new HareApportionment() : apportionmentMethod;
+        int[] seats = method.apportion(partiesList, numSeatsAvailable, tieBreaker);
+        for(int i = 0; i<partiesList.size(); i++) {
+            for(int j = 0; j<seats[i]; j++) {
+                seated.add(partiesList.get(i).getCandidate(j).getBallotIndex());
+            }
+        }
+        return seated;
+    }
+
+    /**
+     * writes the tie-break seed to the audit file if any tie was broken at random, so the run can be repeated
+     */
+    private void auditTieBreaks() {
+        if(tieBreaker.getDraws() > 0) {
+            audit.log("Ties were broken at random with seed " + tieBreaker.getSeed() + ", run again with --seed " + tieBreaker.getSeed() + " to repeat them.\n");
+        }
     }
 
     /**
@@ -113,22 +252,7 @@ class OPLVotingSystem extends VotingSystem {
      * of candidates, number of ballots, and candidate information to the audit file </p>
      */
     private void auditInitialState() {
-        audit.log("INITIAL STATE OF ELECTION\n");
-        audit.log("-------------------------\n\n");
-        audit.log("Type of voting: OPL\n");
-        audit.log("Number of candidates: " + numberOfCandidates + "\n");
-        audit.log("Number of ballots: " + numberOfBallots + "\n");
-        audit.log("-------------------------\n");
-        audit.log("Candidate totals: \n");
-        for (Candidate c : candidates) {
-            audit.log(c.getParty() + ": "+ c.getName() + " with " + c.getBallotCount() + " votes\n");
-        }
-        audit.log("-------------------------\n");
-        audit.log("Party totals: \n");
-        for (OPLParty p : parties.values()) {
-            audit.log(p.getName() + " has " + p.getTotalVotes() + " total votes.\n");
-        }
-        audit.log("-------------------------\n\n");
+        audit.log(new AuditEvent.InitialState("OPL", numberOfBallots, candidates, null, parties.values()));
     }
 
     /**
@@ -0,0 +1,16 @@
+/**
+* SainteLagueApportionment is the Sainte-Lague method, a divisor method dividing each party's votes by 1, 3, 5 and so
+* on. It treats large and small parties more evenly than D'Hondt.
+*/
+public class SainteLagueApportionment extends DivisorApportionment {
+
+    @Override
+    protected int divisor(int seatsWon) {
+        return 2 * seatsWon + 1;
+    }
+
+    @Override
+    public String getName() {
+        return "Sainte-Lague";
+    }
+}
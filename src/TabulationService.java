@@ -0,0 +1,309 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* TabulationService counts elections on a JVM that stays up between them, so each one after the first is counted by code that
+* is already loaded and compiled. It can be used from Java through tabulate(), which returns an ElectionResult instead of
+* printing, or over HTTP on the loopback interface once start() is called.
+*
+* <p> Each election is given its own directory under the service's output directory for its audit and invalidated ballot
+* files, like the elections of an ElectionBatch, so elections can be counted at the same time. What an election prints is
+* kept in its ElectionResult instead of reaching the console. </p>
+*
+* <p> Over HTTP, POST /tabulate?path=FILE counts an election file or directory the service can read, and POST /tabulate with
+* the election file as the body counts the file sent. The options seed, apportionment, batch-eliminate, audit-level,
+* audit-json and metrics can be added as query parameters, and override the options the service was started with. The
+* response is the ElectionResult as JSON, with the ElectionMetrics of the count when metrics is set, or 400 with the error
+* if a parameter cannot be read. An uploaded file is deleted once it is counted, and one longer than setMaxUpload() allows
+* is answered 413. GET /health answers ok. </p>
+*/
+public class TabulationService {
+    /**
+     * Options that can be set for one election by a query parameter of the same name
+     */
+    private static final List<String> REQUEST_OPTIONS = Arrays.asList("seed", "apportionment", "batch-eliminate", "audit-level", "audit-json", "metrics");
+    /**
+     * Request options that are switched on by being given, and take no value
+     */
+    private static final List<String> REQUEST_FLAGS = Arrays.asList("batch-eliminate", "audit-json", "metrics");
+    /**
+     * Largest election file that can be sent as the body of a request unless setMaxUpload() is called, in bytes
+     */
+    public static final long DEFAULT_MAX_UPLOAD = 100L << 20;
+    /**
+     * Name of the directory uploaded election files are kept in while they are counted, under the output directory
+     */
+    public static final String UPLOAD_DIR = "uploads";
+
+    private final File outputDir;
+    private final ElectionOptions options;
+    private final AtomicLong elections = new AtomicLong();
+    private long maxUpload = DEFAULT_MAX_UPLOAD;
+    private HttpServer server;
+    private ExecutorService pool;
+
+    /**
+    * <p> Creates a service, nothing is counted or listened for until tabulate() or start() is called. </p>
+    * @param  outputDir directory each election's own directory is written in.
+    * @param  options   ElectionOptions elections are counted with unless a request sets others. Simulations are not run.
+    */
+    public TabulationService(File outputDir, ElectionOptions options) {
+        this.outputDir = outputDir;
+        this.options = options;
+    }
+
+    /**
+    * <p> Counts an election with the options of the service. </p>
+    * @param  election File of the election, or a directory of files making up one election.
+    * @return ElectionResult of the election, holding the error if it could not be counted.
+    */
+    public ElectionResult tabulate(File election) {
+        return tabulate(election, options);
+    }
+
+    /**
+    * <p> Counts an election. Safe to call from several threads at once. </p>
+    * @param  election        File of the election, or a directory of files making up one election.
+    * @param  electionOptions ElectionOptions to count the election with, its output directory is replaced.
+    * @return ElectionResult of the election, holding the error if it could not be counted.
+    */
+    public ElectionResult tabulate(File election, ElectionOptions electionOptions) {
+        File dir = new File(outputDir, election.getName() + "-" + elections.incrementAndGet());
+        dir.mkdirs();
+        ElectionOptions countOptions = new ElectionOptions(electionOptions);
+        countOptions.setOutputDir(dir);
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        ThreadOutput.redirect(printed);
+        try {
+            long start = System.nanoTime();
+            ElectionMetrics metrics = new ElectionMetrics(election.getPath(), countOptions.getMetrics());
+            VotingSystem votingSystem;
+            if(election.isDirectory()) {
+                MultiFileProcessor files = new MultiFileProcessor(MultiFileProcessor.listElectionFiles(election), dir);
+                files.setMetrics(metrics);
+                votingSystem = files.parseFiles();
+            } else {
+                HeaderProcessor header = new HeaderProcessor(election, dir);
+                header.setMetrics(metrics);
+                votingSystem = header.parseHeader();
+            }
+            if(votingSystem == null) {
+                return new ElectionResult(election, "Unknown type of election", printed.toString());
+            }
+            long parsed = System.nanoTime();
+            countOptions.apply(votingSystem);
+            ArrayList<AuditEvent> events = new ArrayList<>();
+            if(votingSystem instanceof Audited) {
+                ((Audited) votingSystem).getAudit().setRecorder(events);
+            }
+            ElectionMetrics.Timer count = metrics.begin(ElectionMetrics.Phase.COUNT);
+            votingSystem.runElection();
+            metrics.end(count);
+            long counted = System.nanoTime();
+            return new ElectionResult(election, votingSystem, events, printed.toString(), parsed - start, counted - parsed,
+                countOptions.getMetrics() ? metrics : null);
+        } catch (Exception e) {
+            return new ElectionResult(election, e.getClass().getSimpleName() + (e.getMessage() == null ? "" : ": " + e.getMessage()), printed.toString());
+        } finally {
+            ThreadOutput.restore();
+        }
+    }
+
+    /**
+    * <p> Starts answering requests over HTTP on the loopback interface. </p>
+    * @param  port    port to listen on, 0 for any free port.
+    * @param  threads an int representing the most elections to count at once.
+    * @throws IOException if the port cannot be listened on.
+    */
+    public void start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(pool);
+        server.createContext("/tabulate", this::handleTabulate);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+        server.start();
+    }
+
+    /**
+    * <p> Stops answering requests, waiting for none of the elections being counted. </p>
+    */
+    public void stop() {
+        if(server != null) {
+            server.stop(0);
+            pool.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+    * <p> Sets the longest election file that can be sent as the body of a request, longer ones are answered 413. </p>
+    * @param  maxUpload a long representing the most bytes of a body.
+    */
+    public void setMaxUpload(long maxUpload) {
+        this.maxUpload = maxUpload;
+    }
+
+    /**
+    * <p> Getter for the port the service listens on. </p>
+    * @return int port, or -1 if the service has not been started.
+    */
+    public int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+    * <p> Answers a request to count an election. </p>
+    * @param  exchange HttpExchange of the request.
+    */
+    private void handleTabulate(HttpExchange exchange) throws IOException {
+        try {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "text/plain", "ERROR: Elections are counted with POST.\n");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            ArrayList<String> args = new ArrayList<>();
+            for(Map.Entry<String, String> parameter : query.entrySet()) {
+                if(parameter.getKey().equals("path")) {
+                    continue;
+                }
+                if(!REQUEST_OPTIONS.contains(parameter.getKey())) {
+                    respond(exchange, 400, "text/plain", "ERROR: Unknown parameter " + parameter.getKey() + ".\n");
+                    return;
+                }
+                boolean flag = REQUEST_FLAGS.contains(parameter.getKey());
+                if(flag && !parameter.getValue().isEmpty()) {
+                    respond(exchange, 400, "text/plain", "ERROR: Parameter " + parameter.getKey() + " takes no value.\n");
+                    return;
+                }
+                if(!flag && parameter.getValue().isEmpty()) {
+                    respond(exchange, 400, "text/plain", "ERROR: Parameter " + parameter.getKey() + " needs a value.\n");
+                    return;
+                }
+                args.add("--" + parameter.getKey());
+                if(!flag) {
+                    args.add(parameter.getValue());
+                }
+            }
+            ElectionOptions electionOptions = ElectionOptions.parse(args.toArray(new String[0]), options);
+            if(!electionOptions.getErrors().isEmpty()) {
+                respond(exchange, 400, "text/plain", String.join("\n", electionOptions.getErrors()) + "\n");
+                return;
+            }
+
+            File election;
+            File upload = null;
+            if(query.containsKey("path")) {
+                election = new File(query.get("path"));
+                if(!election.exists()) {
+                    respond(exchange, 404, "text/plain", "ERROR: No election file " + election + ".\n");
+                    return;
+                }
+            } else {
+                upload = saveUpload(exchange);
+                if(upload == null) {
+                    respond(exchange, 413, "text/plain", "ERROR: Election files sent in a request can be at most " + maxUpload + " bytes.\n");
+                    return;
+                }
+                election = upload;
+            }
+            ElectionResult result;
+            try {
+                result = tabulate(election, electionOptions);
+            } finally {
+                if(upload != null && !upload.delete()) {
+                    System.out.println("ERROR: Unable to delete uploaded election file " + upload + ".");
+                }
+            }
+            respond(exchange, result.getError() == null ? 200 : 422, "application/json", result.toJson() + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+    * <p> Keeps an election file sent as the body of a request while it is counted, so it can be read like any other. A body
+    * longer than the most that can be uploaded is not kept. </p>
+    * @param  exchange HttpExchange of the request.
+    * @return File the body was written to, to be deleted once the election is counted, or null if the body is too long.
+    */
+    private File saveUpload(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if(length != null) {
+            try {
+                if(Long.parseLong(length) > maxUpload) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                //the body is still counted as it is read
+            }
+        }
+        File uploads = new File(outputDir, UPLOAD_DIR);
+        uploads.mkdirs();
+        File election = new File(uploads, "election" + elections.incrementAndGet() + ".csv");
+        long written = 0;
+        try (InputStream body = exchange.getRequestBody(); OutputStream out = new FileOutputStream(election)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = body.read(buffer)) != -1) {
+                written += read;
+                if(written > maxUpload) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            election.delete();
+            throw e;
+        }
+        if(written > maxUpload) {
+            election.delete();
+            return null;
+        }
+        return election;
+    }
+
+    /**
+    * <p> Splits a query string into its parameters. A parameter without a value maps to an empty string. </p>
+    * @param  rawQuery query string of the request URI, still encoded, or null.
+    * @return Map of each parameter to its value, in the order they were given.
+    */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        LinkedHashMap<String, String> query = new LinkedHashMap<>();
+        if(rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for(String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+    * <p> Sends a response with a body. </p>
+    * @param  exchange    HttpExchange of the request.
+    * @param  status      HTTP status code.
+    * @param  contentType type of the body, sent as UTF-8.
+    * @param  body        String of the body.
+    */
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
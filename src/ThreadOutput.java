@@ -0,0 +1,75 @@
+import java.io.*;
+
+/**
+* ThreadOutput sends what an election prints to System.out somewhere other than the console, without touching what any other
+* thread prints. Once a thread has redirected its output, System.out is a stream that writes to the stream set for whichever
+* thread is printing, or to the console if none is set. Threads that never redirect their output are not affected, so
+* System.out is left in place once it has been swapped.
+*/
+public class ThreadOutput extends OutputStream {
+    private static volatile ThreadOutput installed;
+
+    private final OutputStream console;
+    private PrintStream printStream;
+    private final ThreadLocal<OutputStream> current = new ThreadLocal<>();
+
+    /**
+    * <p> Creates the stream, writing to the console for threads without a stream of their own. </p>
+    * @param  console OutputStream System.out wrote to before it was swapped.
+    */
+    private ThreadOutput(OutputStream console) {
+        this.console = console;
+    }
+
+    /**
+    * <p> Sends everything the current thread prints to System.out to the given stream, until restore() is called. </p>
+    * @param  stream OutputStream the current thread's output goes to.
+    */
+    public static void redirect(OutputStream stream) {
+        install().current.set(stream);
+    }
+
+    /**
+    * <p> Sends what the current thread prints to System.out back to the console. </p>
+    */
+    public static void restore() {
+        System.out.flush();
+        ThreadOutput output = installed;
+        if(output != null) {
+            output.current.remove();
+        }
+    }
+
+    /**
+    * <p> Swaps System.out for a ThreadOutput, unless it already is one. </p>
+    * @return ThreadOutput System.out writes through.
+    */
+    private static synchronized ThreadOutput install() {
+        if(installed == null || installed.printStream != System.out) {
+            installed = new ThreadOutput(System.out);
+            installed.printStream = new PrintStream(installed, true);
+            System.setOut(installed.printStream);
+        }
+        return installed;
+    }
+
+    private OutputStream target() {
+        OutputStream stream = current.get();
+        return stream == null ? console : stream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target().flush();
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+* TieBreaker makes every random choice used to break ties in an election. It is seeded, so an election run again with the
+* same seed breaks its ties the same way, and it counts the choices it makes, so a run that made none is known not to
+* depend on chance. A TieBreaker is not safe to share between threads, split() gives each thread one of its own.
+*/
+public class TieBreaker {
+    private final SplittableRandom random;
+    private final long seed;
+    private int draws;
+
+    /**
+    * <p> Creates a TieBreaker with a seed of its own, which getSeed() reports so the run can be repeated. </p>
+    */
+    public TieBreaker() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+    * <p> Creates a TieBreaker that makes the same choices as any other created with the same seed. </p>
+    * @param  seed a long seeding the random choices.
+    */
+    public TieBreaker(long seed) {
+        this(new SplittableRandom(seed), seed);
+    }
+
+    private TieBreaker(SplittableRandom random, long seed) {
+        this.random = random;
+        this.seed = seed;
+        this.draws = 0;
+    }
+
+    /**
+    * <p> Picks one of several tied choices. </p>
+    * @param  numTied number of tied choices.
+    * @return int from 0 to numTied - 1 representing the choice that wins the tie.
+    */
+    public int pick(int numTied) {
+        if(numTied > 1) {
+            draws++;
+        }
+        return random.nextInt(numTied);
+    }
+
+    /**
+    * <p> Puts a group of tied choices in a random order. </p>
+    * @param  tied list of tied choices, shuffled in place.
+    */
+    public <T> void shuffle(List<T> tied) {
+        if(tied.size() > 1) {
+            draws++;
+        }
+        for(int i = tied.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            tied.set(j, tied.set(i, tied.get(j)));
+        }
+    }
+
+    /**
+    * <p> Creates a TieBreaker for another thread. Its choices are independent of this one's, and the same every time for
+    * TieBreakers split in the same order from the same seed. </p>
+    * @return TieBreaker of its own for the other thread.
+    */
+    public TieBreaker split() {
+        return new TieBreaker(random.split(), seed);
+    }
+
+    /**
+    * <p> Getter for the number of ties broken at random. </p>
+    * @return int representing how many random choices have been made.
+    */
+    public int getDraws() {
+        return draws;
+    }
+
+    /**
+    * <p> Getter for the seed, also reported by TieBreakers split from this one. </p>
+    * @return long seed the choices were made from.
+    */
+    public long getSeed() {
+        return seed;
+    }
+}
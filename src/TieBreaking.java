@@ -0,0 +1,27 @@
+/**
+* TieBreaking is implemented by the voting systems that break ties at random. Their TieBreaker can be seeded, and the part
+* of the count that depends on how ties are broken can be run again on its own, which TieSimulator uses to find how likely
+* each outcome is.
+*/
+public interface TieBreaking {
+
+    /**
+    * <p> Sets the TieBreaker used to break ties when the election is run. </p>
+    * @param  tieBreaker the TieBreaker to use.
+    */
+    void setTieBreaker(TieBreaker tieBreaker);
+
+    /**
+    * <p> Getter for the TieBreaker used to break ties when the election is run. </p>
+    * @return TieBreaker of the election.
+    */
+    TieBreaker getTieBreaker();
+
+    /**
+    * <p> Runs the part of the count that depends on how ties are broken once more, without changing the election or writing
+    * to the audit file. Must only be called after runElection(), and may be called from several threads at once. </p>
+    * @param  tieBreaker TieBreaker used for this run only.
+    * @return IntList of the ballot indexes of the candidates who win or are seated.
+    */
+    IntList runTieTrial(TieBreaker tieBreaker);
+}
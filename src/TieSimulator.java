@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+* TieSimulator finds how likely each candidate is to win or be seated when an election has ties broken at random, by running
+* the tie-dependent part of the count many times. The runs are split into fixed-size chunks, each with a TieBreaker split
+* from the simulator's own before any of them start, and the chunks run on the common fork-join pool. The chunks do not
+* depend on how many threads run them, so a seeded simulation gives the same probabilities on any machine. If the election
+* breaks no ties at random its outcome is certain and only one run is made.
+*/
+public class TieSimulator {
+    /**
+     * Number of runs in each chunk of a simulation
+     */
+    private static final int CHUNK_TRIALS = 1 << 8;
+
+    private final int trials;
+    private final TieBreaker tieBreaker;
+    private double[] probabilities;
+    private int trialsRun;
+
+    /**
+    * <p> Creates a simulator. </p>
+    * @param  trials     number of times to run the tie-dependent part of the count.
+    * @param  tieBreaker TieBreaker the TieBreakers of the runs are split from.
+    */
+    public TieSimulator(int trials, TieBreaker tieBreaker) {
+        this.trials = trials;
+        this.tieBreaker = tieBreaker;
+    }
+
+    /**
+    * <p> Runs the simulation. </p>
+    * @param  election      a voting system that has already run its election.
+    * @param  numCandidates number of candidates in the election.
+    * @return double array with each candidate's probability of winning or being seated, in ballot index order.
+    */
+    public double[] run(TieBreaking election, int numCandidates) {
+        TieBreaker probe = tieBreaker.split();
+        IntList outcome = election.runTieTrial(probe);
+        if(probe.getDraws() == 0) {
+            probabilities = new double[numCandidates];
+            for(int i = 0; i<outcome.size(); i++) {
+                probabilities[outcome.get(i)] = 1.0;
+            }
+            trialsRun = 1;
+            return probabilities;
+        }
+
+        List<Trials> chunks = new ArrayList<>();
+        for(int from = 0; from<trials; from += CHUNK_TRIALS) {
+            chunks.add(new Trials(election, tieBreaker.split(), Math.min(CHUNK_TRIALS, trials - from), numCandidates));
+        }
+        RecursiveTask.invokeAll(chunks);
+        long[] seated = new long[numCandidates];
+        for(Trials chunk : chunks) {
+            for(int i = 0; i<numCandidates; i++) {
+                seated[i] += chunk.seated[i];
+            }
+        }
+        probabilities = new double[numCandidates];
+        for(int i = 0; i<numCandidates; i++) {
+            probabilities[i] = (double) seated[i] / trials;
+        }
+        trialsRun = trials;
+        return probabilities;
+    }
+
+    /**
+    * <p> Prints each candidate's probability of winning or being seated to the terminal. </p>
+    * @param  candidates the candidates of the election, in ballot index order.
+    */
+    public void printResults(List<Candidate> candidates) {
+        System.out.println("\nTie-break simulation:");
+        System.out.println("---------------------------");
+        if(trialsRun == 1) {
+            System.out.println("No ties were broken at random, so the result is certain.");
+        } else {
+            System.out.println("Ties were broken at random in " + trialsRun + " runs, seeded with " + tieBreaker.getSeed() + ".");
+        }
+        for(int i = 0; i<candidates.size(); i++) {
+            Candidate c = candidates.get(i);
+            System.out.println(c.getName() + " won or was seated in " + String.format("%.1f", probabilities[i] * 100) + "% of runs.");
+        }
+    }
+
+    /**
+    * <p> Getter for the number of runs made by the last simulation. </p>
+    * @return int representing how many times the tie-dependent part of the count was run.
+    */
+    public int getTrialsRun() {
+        return trialsRun;
+    }
+
+    /**
+     * Runs one chunk of a simulation and counts how often each candidate wins or is seated
+     */
+    private static class Trials extends RecursiveTask<Trials> {
+        private static final long serialVersionUID = 1L;
+
+        private final TieBreaking election;
+        private final TieBreaker tieBreaker;
+        private final int count;
+        private final int[] seated;
+
+        private Trials(TieBreaking election, TieBreaker tieBreaker, int count, int numCandidates) {
+            this.election = election;
+            this.tieBreaker = tieBreaker;
+            this.count = count;
+            this.seated = new int[numCandidates];
+        }
+
+        @Override
+        protected Trials compute() {
+            for(int trial = 0; trial<count; trial++) {
+                IntList outcome = election.runTieTrial(tieBreaker);
+                for(int i = 0; i<outcome.size(); i++) {
+                    seated[outcome.get(i)]++;
+                }
+            }
+            return this;
+        }
+    }
+}
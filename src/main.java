@@ -1,37 +1,68 @@
-import java.awt.Desktop;
-import java.io.*;
-import java.util.Scanner;
-
-/**
- * Main is the starting point for the votingSystem program.
- * 
- * @author Matthew Johnson
- */
-public class main{
-    /**
-     * <p>main will prompt the user to input the filename of the .csv ballot file. It will then test the filename. If the filename is not valid
-     * it will prompt the user to try again, if the filename is valid, it will create a file pointer pointing to that file and pass that file pointer
-     * to an election object that it creates.</p>
-     */
-    public static void main(String args[]) throws FileNotFoundException {
-
-        Scanner s = new Scanner(System.in);
-        System.out.println("Please Enter Filename: ");
-        String fileName = s.nextLine();
-
-        File fp;
-        //test for valid filename
-        while(true) {
-            try {
-                fp = new File(fileName);
-                break; //break if the name is valid and calling File() doesn't throw an exception
-            
-            } catch (Exception e) {
-                System.out.println("Invalid File Name, please retry.");
-                fileName = s.nextLine();
-            }
-        }
-        s.close();
-        Election election = new Election(fp); //create election object with file pointer passed in
-    }
+import java.awt.Desktop;
+import java.io.*;
+import java.util.Scanner;
+
+/**
+ * Main is the starting point for the votingSystem program.
+ * 
+ * @author Matthew Johnson
+ */
+public class main{
+    /**
+     * <p>main will prompt the user to input the filename of the .csv ballot file. It will then test the filename. If the filename is not valid
+     * it will prompt the user to try again, if the filename is valid, it will create a file pointer pointing to that file and pass that file pointer
+     * to an election object that it creates. With --watch [seconds] the file is polled by an ElectionWatcher and counted again whenever ballots
+     * are appended to it, with --batch the file is a directory of elections counted by an ElectionBatch, and with --serve
+     * no file is asked for and elections are counted over HTTP by a TabulationService until the program is stopped.</p>
+     */
+    public static void main(String args[]) throws IOException {
+        ElectionOptions options = ElectionOptions.parse(args);
+        File outputDir = options.getOutputDir() != null ? options.getOutputDir() : new File("results");
+        int threads = options.getThreads() > 0 ? options.getThreads() : Runtime.getRuntime().availableProcessors();
+        if(options.getServePort() != null) {
+            //keep counting elections sent over HTTP instead of asking for a file
+            TabulationService service = new TabulationService(outputDir, options);
+            if(options.getMaxUpload() != null) {
+                service.setMaxUpload(options.getMaxUpload());
+            }
+            service.start(options.getServePort(), threads);
+            System.out.println("Counting elections at http://127.0.0.1:" + service.getPort() + "/tabulate");
+            return;
+        }
+
+        Scanner s = new Scanner(System.in);
+        System.out.println("Please Enter Filename: ");
+        String fileName = s.nextLine();
+
+        File fp;
+        //test for valid filename
+        while(true) {
+            try {
+                fp = new File(fileName);
+                break; //break if the name is valid and calling File() doesn't throw an exception
+            
+            } catch (Exception e) {
+                System.out.println("Invalid File Name, please retry.");
+                fileName = s.nextLine();
+            }
+        }
+        s.close();
+        if(options.getWatchSeconds() != null) {
+            //count the file again whenever ballots are appended to it, until the program is stopped
+            if(options.getOutputDir() != null) {
+                options.getOutputDir().mkdirs();
+            }
+            ElectionWatcher watcher = new ElectionWatcher(fp, options);
+            watcher.watch(options.getWatchSeconds() * 1000L);
+            return;
+        }
+        if(options.getBatch()) {
+            //every election in the directory is counted on its own, with its files written under the output directory
+            ElectionBatch batch = new ElectionBatch(ElectionBatch.listElections(fp), outputDir, options, threads);
+            batch.run();
+            batch.printSummary();
+            return;
+        }
+        Election election = new Election(fp, options); //create election object with file pointer passed in
+    }
 }
\ No newline at end of file
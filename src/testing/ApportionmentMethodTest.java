@@ -0,0 +1,116 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import org.junit.Test;
+
+/**
+ * Tests for apportioning OPL seats between parties with the Hare quota, D'Hondt and Sainte-Lague
+ */
+public class ApportionmentMethodTest {
+
+    /**
+     * Makes a party of eight candidates, so no party runs out of candidates, with all of its votes on the first one
+     */
+    private OPLParty party(String name, int votes) {
+        OPLParty party = new OPLParty(name);
+        for(int i = 0; i<8; i++) {
+            OPLCandidate candidate = new OPLCandidate(name + i, name, i);
+            if(i == 0) {
+                candidate.addVotes(votes);
+            }
+            party.addCandidate(candidate);
+        }
+        party.sortCandidates();
+        return party;
+    }
+
+    /**
+     * The parties of the usual textbook example, 100000, 80000, 30000 and 20000 votes for 8 seats
+     */
+    private ArrayList<OPLParty> textbookParties() {
+        ArrayList<OPLParty> parties = new ArrayList<>();
+        parties.add(party("A", 100000));
+        parties.add(party("B", 80000));
+        parties.add(party("C", 30000));
+        parties.add(party("D", 20000));
+        return parties;
+    }
+
+    @Test
+    public void testDHondt() {
+        int[] seats = new DHondtApportionment().apportion(textbookParties(), 8, new TieBreaker(1));
+        assertArrayEquals(new int[] {4, 3, 1, 0}, seats);
+    }
+
+    @Test
+    public void testSainteLague() {
+        int[] seats = new SainteLagueApportionment().apportion(textbookParties(), 8, new TieBreaker(1));
+        assertArrayEquals(new int[] {3, 3, 1, 1}, seats);
+    }
+
+    @Test
+    public void testHare() {
+        // quota 28750: 3, 2, 1 and 0 full quotas, then the largest remainders go to B and D
+        int[] seats = new HareApportionment().apportion(textbookParties(), 8, new TieBreaker(1));
+        assertArrayEquals(new int[] {3, 3, 1, 1}, seats);
+    }
+
+    @Test
+    public void testHareRemainders() {
+        IntList remainders = new IntList(8);
+        int[] seats = new HareApportionment().apportion(textbookParties(), 8, new TieBreaker(1), remainders);
+        assertArrayEquals(new int[] {3, 3, 1, 1}, seats);
+        assertEquals(2, remainders.size());
+        assertEquals(1, remainders.get(0));
+        assertEquals(3, remainders.get(1));
+    }
+
+    @Test
+    public void testHareCappedAtCandidates() {
+        // quota 8333: A has 11 whole quotas but only eight candidates
+        ArrayList<OPLParty> parties = new ArrayList<>();
+        parties.add(party("A", 99990));
+        parties.add(party("B", 10));
+        assertArrayEquals(new int[] {8, 1}, new HareApportionment().apportion(parties, 12, new TieBreaker(1)));
+    }
+
+    @Test
+    public void testHareFewerVotesThanSeats() {
+        // quota 0, so every seat is a remainder seat and each party can take one
+        ArrayList<OPLParty> parties = new ArrayList<>();
+        parties.add(party("A", 2));
+        parties.add(party("B", 1));
+        assertEquals(0, HareApportionment.quota(parties, 5));
+        assertArrayEquals(new int[] {1, 1}, new HareApportionment().apportion(parties, 5, new TieBreaker(1)));
+    }
+
+    @Test
+    public void testNoPartyWinsMoreSeatsThanCandidates() {
+        ArrayList<OPLParty> parties = new ArrayList<>();
+        parties.add(party("A", 100000));
+        parties.add(party("B", 10));
+        int[] seats = new DHondtApportionment().apportion(parties, 12, new TieBreaker(1));
+        assertArrayEquals(new int[] {8, 4}, seats);
+    }
+
+    @Test
+    public void testTieOnlyDrawnForLastSeat() {
+        ArrayList<OPLParty> parties = new ArrayList<>();
+        parties.add(party("A", 50));
+        parties.add(party("B", 50));
+        TieBreaker tieBreaker = new TieBreaker(1);
+        assertArrayEquals(new int[] {1, 1}, new DHondtApportionment().apportion(parties, 2, tieBreaker));
+        assertEquals(0, tieBreaker.getDraws());
+        int[] seats = new DHondtApportionment().apportion(parties, 3, tieBreaker);
+        assertEquals(3, seats[0] + seats[1]);
+        assertEquals(1, tieBreaker.getDraws());
+    }
+
+    @Test
+    public void testForName() {
+        assertTrue(ApportionmentMethod.forName("dhondt") instanceof DHondtApportionment);
+        assertTrue(ApportionmentMethod.forName("Sainte-Lague") instanceof SainteLagueApportionment);
+        assertTrue(ApportionmentMethod.forName("hare") instanceof HareApportionment);
+        assertNull(ApportionmentMethod.forName("bogus"));
+    }
+}
@@ -0,0 +1,127 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for what the audit file holds at each level. Run from the src folder, so the election files are found in
+ * ../testing
+ */
+public class AuditTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String INITIAL_STATE = "INITIAL STATE OF ELECTION\n-------------------------\n\n"
+        + "Type of voting: IR\nNumber of candidates: 4\nNumber of ballots: 7\n"
+        + "Number of invalidated ballots: 1 (1 under-ranked, 0 malformed)\n";
+
+    private File countElectionTest1(String... args) throws IOException {
+        return count("electionTest1.csv", args);
+    }
+
+    private File count(String election, String... args) throws IOException {
+        File outputDir = folder.newFolder();
+        VotingSystem votingSystem = new HeaderProcessor(new File("../testing/" + election), outputDir).parseHeader();
+        ElectionOptions options = ElectionOptions.parse(args);
+        options.setOutputDir(outputDir);
+        options.apply(votingSystem);
+        votingSystem.runElection();
+        return outputDir;
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSummaryLevel() throws IOException {
+        String audit = read(new File(countElectionTest1("--seed", "11", "--audit-level", "summary"), Audit.FILE_NAME));
+        assertTrue(audit.startsWith(INITIAL_STATE));
+        assertTrue(audit.contains("CANDIDATE REMOVED\n-------------------------\n\nRoyce has the fewest votes with 0 ballots.\n"));
+        assertTrue(audit.contains("Kleinberg has won with 3 votes"));
+        assertTrue(audit.contains("run again with --seed 11 to repeat them."));
+        assertFalse(audit.contains("BALLOT TOTALS AFTER REDISTRIBUTION"));
+        assertFalse(audit.contains("now has"));
+    }
+
+    @Test
+    public void testDetailLevel() throws IOException {
+        String audit = read(new File(countElectionTest1("--seed", "11", "--audit-level", "detail"), Audit.FILE_NAME));
+        assertTrue(audit.startsWith(INITIAL_STATE));
+        assertTrue(audit.contains("CANDIDATE REMOVED\n-------------------------\n\nRoyce has the fewest votes with 0 ballots.\n"));
+        assertTrue(audit.contains("BALLOT TOTALS AFTER REDISTRIBUTION\n-------------------------\n\n"));
+        assertTrue(audit.contains("Kleinberg now has 3 ballots"));
+        assertTrue(audit.contains("Kleinberg has won with 3 votes"));
+    }
+
+    @Test
+    public void testDetailIsSummaryWithRoundTotals() throws IOException {
+        String summary = read(new File(countElectionTest1("--seed", "11", "--audit-level", "summary"), Audit.FILE_NAME));
+        String detail = read(new File(countElectionTest1("--seed", "11"), Audit.FILE_NAME));
+        String totals = "BALLOT TOTALS AFTER REDISTRIBUTION\n-------------------------\n\n";
+        StringBuilder withoutTotals = new StringBuilder();
+        for(String section : detail.split("(?=CANDIDATE REMOVED|ELECTION HAS ENDED)")) {
+            int at = section.indexOf(totals);
+            withoutTotals.append(at < 0 ? section : section.substring(0, at));
+        }
+        assertEquals(summary, withoutTotals.toString());
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        File outputDir = countElectionTest1("--seed", "11", "--audit-json");
+        List<String> lines = Files.readAllLines(new File(outputDir, ElectionOptions.AUDIT_JSON).toPath());
+        assertTrue(lines.get(0).startsWith("{\"event\":"));
+        int eliminated = 0;
+        for(String line : lines) {
+            if(line.startsWith("{\"event\":\"candidate_eliminated\"")) {
+                eliminated++;
+            }
+        }
+        assertEquals(2, eliminated);
+    }
+
+    /**
+     * Reads the seat_awarded events of an election's JSON audit file, with the text before the candidate cut off
+     */
+    private List<String> seatsAwarded(String election) throws IOException {
+        File outputDir = count(election, "--seed", "11", "--audit-json");
+        List<String> seats = new ArrayList<>();
+        for(String line : Files.readAllLines(new File(outputDir, ElectionOptions.AUDIT_JSON).toPath())) {
+            if(line.startsWith("{\"event\":\"seat_awarded\"")) {
+                seats.add(line.substring(line.indexOf("\"candidate\"")));
+            }
+        }
+        return seats;
+    }
+
+    @Test
+    public void testJsonSeatNumbers() throws IOException {
+        assertEquals(Arrays.asList(
+            "\"candidate\":\"Pike\",\"party\":\"D\",\"votes\":3,\"seat\":1,\"ballots\":9}",
+            "\"candidate\":\"Borg\",\"party\":\"R\",\"votes\":2,\"seat\":2,\"ballots\":9}"), seatsAwarded("MPOtest1.csv"));
+        assertEquals(Arrays.asList(
+            "\"candidate\":\"Borg\",\"party\":\"R\",\"votes\":2,\"seat\":1,\"ballots\":9}",
+            "\"candidate\":\"ike\",\"party\":\"D\",\"votes\":3,\"seat\":2,\"ballots\":9}",
+            "\"candidate\":\"Foster\",\"party\":\"D\",\"votes\":2,\"seat\":3,\"ballots\":9}"), seatsAwarded("OPLtest1.csv"));
+    }
+
+    @Test
+    public void testLogToStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Audit audit = new Audit(out);
+        audit.log("first\n");
+        audit.log("second\n");
+        audit.close();
+        assertEquals("first\nsecond\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
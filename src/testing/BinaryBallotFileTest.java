@@ -0,0 +1,82 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for reading election files in the binary ballot format. Run from the src folder, so the election files are found
+ * in ../testing
+ */
+public class BinaryBallotFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Starts a binary OPL header up to its number of seats
+     */
+    private ByteArrayOutputStream header() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] {'E', 'B', 'A', 'L', BinaryBallotFile.VERSION});
+        BinaryBallotFile.writeString(out, "OPL");
+        BinaryBallotFile.writeVarInt(out, 3);
+        return out;
+    }
+
+    /**
+     * Writes the bytes to a file and reads its header, returning the error it was rejected with
+     */
+    private String headerError(ByteArrayOutputStream out) throws IOException {
+        File election = folder.newFile();
+        Files.write(election.toPath(), out.toByteArray());
+        try {
+            new HeaderProcessor(election).readHeader();
+        } catch (UncheckedIOException e) {
+            return e.getCause().getMessage();
+        }
+        fail("header of " + election + " was read");
+        return null;
+    }
+
+    @Test
+    public void testConvertedFileCountsTheSame() throws IOException {
+        File binary = folder.newFile("OPLtest1.bin");
+        assertEquals(9, BinaryBallotFile.convert(new File("../testing/OPLtest1.csv"), binary));
+        VotingSystem fromCsv = new HeaderProcessor(new File("../testing/OPLtest1.csv"), folder.newFolder()).parseHeader();
+        VotingSystem fromBinary = new HeaderProcessor(binary, folder.newFolder()).parseHeader();
+        for(int i = 0; i<fromCsv.getCandidates().size(); i++) {
+            assertEquals(fromCsv.getCandidates().get(i).getBallotCount(), fromBinary.getCandidates().get(i).getBallotCount());
+        }
+    }
+
+    @Test
+    public void testCandidateCountLargerThanFile() throws IOException {
+        ByteArrayOutputStream out = header();
+        BinaryBallotFile.writeVarInt(out, 1000000);
+        String error = headerError(out);
+        assertTrue(error, error.contains("has candidate count 1000000 at byte 10, expected 0 to 0"));
+    }
+
+    @Test
+    public void testNegativeCandidateCount() throws IOException {
+        ByteArrayOutputStream out = header();
+        out.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        String error = headerError(out);
+        assertTrue(error, error.contains("has candidate count 4294967295 at byte 10"));
+    }
+
+    @Test
+    public void testStringLongerThanFile() throws IOException {
+        ByteArrayOutputStream out = header();
+        BinaryBallotFile.writeVarInt(out, 1);
+        BinaryBallotFile.writeVarInt(out, 1 << 30);
+        out.write(new byte[] {'P', 'i', 'k', 'e'});
+        String error = headerError(out);
+        assertTrue(error, error.contains("string of 1073741824 bytes at byte 11"));
+    }
+}
@@ -0,0 +1,71 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the indexed heaps that keep the IR leader and trailing candidate
+ */
+public class CandidateHeapTest {
+
+    private CandidateHeap heap(boolean most, int... ballots) {
+        CandidateHeap heap = new CandidateHeap(ballots.length, most);
+        for(int i = 0; i<ballots.length; i++) {
+            heap.update(i, ballots[i]);
+        }
+        return heap;
+    }
+
+    @Test
+    public void testPeekFewestAndMost() {
+        CandidateHeap fewest = heap(false, 5, 2, 9, 4);
+        CandidateHeap most = heap(true, 5, 2, 9, 4);
+        assertEquals(1, fewest.peek());
+        assertEquals(2, fewest.peekCount());
+        assertEquals(2, most.peek());
+        assertEquals(9, most.peekCount());
+    }
+
+    @Test
+    public void testUpdateMovesCandidate() {
+        CandidateHeap fewest = heap(false, 5, 2, 9, 4);
+        fewest.update(1, 7);
+        assertEquals(3, fewest.peek());
+        fewest.update(2, 1);
+        assertEquals(2, fewest.peek());
+        assertEquals(4, fewest.size());
+    }
+
+    @Test
+    public void testRemove() {
+        CandidateHeap fewest = heap(false, 5, 2, 9, 4);
+        fewest.remove(1);
+        assertFalse(fewest.contains(1));
+        assertEquals(3, fewest.peek());
+        assertEquals(3, fewest.size());
+        fewest.remove(1);
+        assertEquals(3, fewest.size());
+    }
+
+    @Test
+    public void testTiesInBallotOrder() {
+        CandidateHeap fewest = heap(false, 3, 6, 3, 8, 3, 3);
+        IntList ties = fewest.ties();
+        assertEquals(4, ties.size());
+        assertEquals(0, ties.get(0));
+        assertEquals(2, ties.get(1));
+        assertEquals(4, ties.get(2));
+        assertEquals(5, ties.get(3));
+        assertEquals(0, heap(false).ties().size());
+    }
+
+    @Test
+    public void testEqualCountsOrderedByBallotIndex() {
+        CandidateHeap fewest = new CandidateHeap(4, false);
+        for(int i = 3; i>=0; i--) {
+            fewest.update(i, 3);
+        }
+        assertEquals(0, fewest.peek());
+        fewest.remove(0);
+        assertEquals(1, fewest.peek());
+    }
+}
@@ -0,0 +1,76 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that elections counted together by an ElectionBatch do not interfere with each other. Run from the src folder, so
+ * the election files are found in ../testing
+ */
+public class ElectionBatchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] ELECTIONS = {"electionTest1.csv", "OPLtest1.csv", "MPOtest1.csv", "BallotRedistributeTester.csv",
+                                               "OPLtest2.csv", "threewaytiefortwoseats.csv", "electionTest1.csv"};
+
+    private List<File> elections() {
+        List<File> elections = new ArrayList<>();
+        for(String election : ELECTIONS) {
+            elections.add(new File("../testing/" + election));
+        }
+        return elections;
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEachElectionCountedAsIfAlone() throws IOException {
+        File outputDir = folder.newFolder();
+        ElectionOptions options = ElectionOptions.parse(new String[] {"--seed", "11"});
+        List<ElectionBatch.Result> results = new ElectionBatch(elections(), outputDir, options, 4).run();
+
+        assertEquals(ELECTIONS.length, results.size());
+        assertEquals(new File(outputDir, "electionTest1-2"), results.get(6).getOutputDir());
+        for(ElectionBatch.Result result : results) {
+            assertNull(result.getError());
+            File alone = folder.newFolder();
+            ElectionOptions aloneOptions = new ElectionOptions(options);
+            aloneOptions.setOutputDir(alone);
+            VotingSystem votingSystem = new Election(result.getElection(), aloneOptions).getVotingSystem();
+            assertArrayEquals(ElectionResult.winnersOf(votingSystem), result.getWinners());
+            assertEquals(result.getElection().getName(), read(new File(alone, Audit.FILE_NAME)),
+                read(new File(result.getOutputDir(), Audit.FILE_NAME)));
+            assertTrue(new File(result.getOutputDir(), ElectionBatch.RESULTS_FILE).length() > 0);
+        }
+        assertTrue(new File(results.get(0).getOutputDir(), InvalidBallotWriter.FILE_NAME).exists());
+        assertFalse(new File(outputDir, Audit.FILE_NAME).exists());
+    }
+
+    @Test
+    public void testSummary() throws IOException {
+        File outputDir = folder.newFolder();
+        File missing = new File(folder.getRoot(), "missing.csv");
+        List<File> elections = new ArrayList<>(Arrays.asList(new File("../testing/OPLtest1.csv"), missing,
+                                                             new File("../testing/electionTest1.csv")));
+        new ElectionBatch(elections, outputDir, ElectionOptions.parse(new String[] {"--seed", "11"}), 2).run();
+
+        List<String> summary = Files.readAllLines(new File(outputDir, ElectionBatch.SUMMARY_FILE).toPath());
+        assertEquals(4, summary.size());
+        assertEquals("election,type,ballots,winners,milliseconds,status", summary.get(0));
+        assertTrue(summary.get(1), summary.get(1).matches("OPLtest1\\.csv,OPL,9,Borg; ike; Foster,\\d+,OK"));
+        assertTrue(summary.get(2), summary.get(2).startsWith("missing.csv,"));
+        assertTrue(summary.get(2), summary.get(2).contains(",ERROR: "));
+        assertTrue(summary.get(3), summary.get(3).matches("electionTest1\\.csv,IR,7,Kleinberg,\\d+,OK"));
+    }
+}
@@ -0,0 +1,89 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that generated election files can be repeated from their seed and are read the way the settings describe
+ */
+public class ElectionGeneratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ElectionGenerator generator(String type, long seed) {
+        ElectionGenerator generator = new ElectionGenerator();
+        generator.setType(type);
+        generator.setBallots(5000);
+        generator.setCandidates(8);
+        generator.setParties(3);
+        generator.setSeats(2);
+        generator.setInvalidRate(type.equals("IR") ? 0.1 : 0);
+        generator.setSeed(seed);
+        return generator;
+    }
+
+    private FileProcessor read(File election) throws IOException {
+        HeaderProcessor header = new HeaderProcessor(election, folder.newFolder());
+        return new FileProcessor(header, header.openBallots(), 1);
+    }
+
+    /**
+     * Reads the number of first choices of each candidate, sorted most first
+     */
+    private int[] firstChoices(File election) throws IOException {
+        FileProcessor fileProcessor = read(election);
+        int[] counts = new int[fileProcessor.getCandidates().size()];
+        for(int i = 0; i<counts.length; i++) {
+            counts[i] = -fileProcessor.getCandidates().get(i).getBallotCount();
+        }
+        Arrays.sort(counts);
+        for(int i = 0; i<counts.length; i++) {
+            counts[i] = -counts[i];
+        }
+        return counts;
+    }
+
+    @Test
+    public void testSameSeedSameFile() throws IOException {
+        for(String type : new String[] {"IR", "OPL", "MPO"}) {
+            File first = folder.newFile();
+            File second = folder.newFile();
+            File other = folder.newFile();
+            generator(type, 7).write(first);
+            generator(type, 7).write(second);
+            generator(type, 8).write(other);
+            assertArrayEquals(type, Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+            assertFalse(type, Arrays.equals(Files.readAllBytes(first.toPath()), Files.readAllBytes(other.toPath())));
+        }
+    }
+
+    @Test
+    public void testEveryBallotIsRead() throws IOException {
+        for(String type : new String[] {"IR", "OPL", "MPO"}) {
+            File election = folder.newFile();
+            generator(type, 3).write(election);
+            FileProcessor fileProcessor = read(election);
+            assertEquals(type, 5000, fileProcessor.getBallotsRead());
+            assertEquals(type, type.equals("IR") ? 500 : 0, fileProcessor.getInvalidatedCount());
+        }
+    }
+
+    @Test
+    public void testTiesOption() throws IOException {
+        for(String type : new String[] {"OPL", "MPO"}) {
+            File election = folder.newFile();
+            ElectionGenerator.main(new String[] {election.getPath(), "--type", type, "--ballots", "10001", "--candidates", "6",
+                                                 "--seats", "2", "--ties", "3", "--seed", "5"});
+            int[] counts = firstChoices(election);
+            assertEquals(type, counts[0], counts[1]);
+            assertEquals(type, counts[1], counts[2]);
+            assertNotEquals(type, counts[2], counts[3]);
+            assertEquals(type, 10001, Arrays.stream(counts).sum());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for following an election file that ballots are appended to. Run from the src folder, so the election files are
+ * found in ../testing
+ */
+public class ElectionWatcherTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes the header of OPLtest1.csv and its ballot lines from first up to last to a new file
+     */
+    private File copy(List<String> lines, int last) throws IOException {
+        File election = folder.newFile("grow.csv");
+        append(election, lines, 0, last);
+        return election;
+    }
+
+    private void append(File election, List<String> lines, int first, int last) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for(int i = first; i<last; i++) {
+            text.append(lines.get(i)).append('\n');
+        }
+        append(election, text.toString());
+    }
+
+    private void append(File election, String text) throws IOException {
+        Files.write(election.toPath(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private int[] ballotCounts(VotingSystem votingSystem) {
+        int[] counts = new int[votingSystem.getCandidates().size()];
+        for(int i = 0; i<counts.length; i++) {
+            counts[i] = votingSystem.getCandidates().get(i).getBallotCount();
+        }
+        return counts;
+    }
+
+    @Test
+    public void testOnlyAppendedBallotsAreTallied() throws IOException {
+        List<String> lines = Files.readAllLines(new File("../testing/OPLtest1.csv").toPath());
+        File election = copy(lines, 8);
+        ElectionOptions options = ElectionOptions.parse(new String[] {"--seed", "11"});
+        options.setOutputDir(folder.newFolder());
+        ElectionWatcher watcher = new ElectionWatcher(election, options);
+
+        // Pike, Pike and Foster
+        assertTrue(watcher.poll());
+        VotingSystem first = watcher.publish();
+        assertArrayEquals(new int[] {2, 1, 0, 0, 0, 0}, ballotCounts(first));
+        assertFalse(watcher.poll());
+
+        // five more ballots and the start of the last one, which waits for its newline
+        append(election, lines, 8, 13);
+        append(election, ",1,");
+        assertTrue(watcher.poll());
+        assertEquals(election.length() - 3, watcher.getOffset());
+        VotingSystem second = watcher.publish();
+        assertNotSame(first, second);
+        assertArrayEquals(new int[] {3, 1, 0, 2, 1, 1}, ballotCounts(second));
+        assertEquals(8, second.getNumberOfBallots());
+
+        append(election, ",,,\n");
+        assertTrue(watcher.poll());
+        assertEquals(election.length(), watcher.getOffset());
+        VotingSystem last = watcher.publish();
+        VotingSystem whole = new HeaderProcessor(new File("../testing/OPLtest1.csv"), folder.newFolder()).parseHeader();
+        whole.runElection();
+        assertArrayEquals(ballotCounts(whole), ballotCounts(last));
+        assertArrayEquals(ElectionResult.winnersOf(whole), ElectionResult.winnersOf(last));
+        assertTrue(new File(options.getOutputDir(), Audit.FILE_NAME).exists());
+    }
+
+    @Test
+    public void testWatchOption() {
+        assertNull(ElectionOptions.parse(new String[0]).getWatchSeconds());
+        assertEquals(Integer.valueOf(ElectionOptions.DEFAULT_WATCH_SECONDS), ElectionOptions.parse(new String[] {"--watch", "--seed", "1"}).getWatchSeconds());
+        assertEquals(Integer.valueOf(2), ElectionOptions.parse(new String[] {"--watch", "2"}).getWatchSeconds());
+        ElectionOptions zero = ElectionOptions.parse(new String[] {"--watch", "0"}, new ElectionOptions());
+        assertEquals(1, zero.getErrors().size());
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that OPL and MPO ballots tallied in chunks on several threads give the same counts as reading them one after
+ * another. Run from the src folder, so the election files are found in ../testing
+ */
+public class FileProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int BALLOTS = 2000;
+
+    @Before
+    public void setUp() {
+        // split every body, however small, between the threads
+        FileProcessor.setParallelThreshold(1);
+    }
+
+    @After
+    public void tearDown() {
+        FileProcessor.setParallelThreshold(0);
+    }
+
+    /**
+     * Writes the header of a fixture followed by BALLOTS of its ballot lines picked at random, with or without a newline
+     * after the last one
+     */
+    private File grow(String fixture, boolean trailingNewline) throws IOException {
+        List<String> lines = Files.readAllLines(new File("../testing/" + fixture).toPath());
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i<4; i++) {
+            text.append(lines.get(i)).append('\n');
+        }
+        text.append(BALLOTS).append('\n');
+        Random random = new Random(5);
+        for(int i = 0; i<BALLOTS; i++) {
+            text.append(lines.get(5 + random.nextInt(lines.size() - 5)));
+            if(i < BALLOTS - 1 || trailingNewline) {
+                text.append('\n');
+            }
+        }
+        File election = folder.newFile();
+        Files.write(election.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        return election;
+    }
+
+    private int[] tally(File election, int threads) throws IOException {
+        HeaderProcessor header = new HeaderProcessor(election, folder.getRoot());
+        FileProcessor fileProcessor = new FileProcessor(header, header.openBallots(), threads);
+        int[] counts = new int[fileProcessor.getCandidates().size()];
+        for(int i = 0; i<counts.length; i++) {
+            counts[i] = fileProcessor.getCandidates().get(i).getBallotCount();
+        }
+        return counts;
+    }
+
+    private void assertParallelMatchesSerial(String fixture) throws IOException {
+        for(boolean trailingNewline : new boolean[] {true, false}) {
+            File election = grow(fixture, trailingNewline);
+            int[] serial = tally(election, 1);
+            int total = 0;
+            for(int count : serial) {
+                total += count;
+            }
+            assertEquals(BALLOTS, total);
+            for(int threads = 2; threads<=7; threads++) {
+                assertArrayEquals(fixture + " on " + threads + " threads", serial, tally(election, threads));
+            }
+        }
+    }
+
+    @Test
+    public void testOPLParallelMatchesSerial() throws IOException {
+        assertParallelMatchesSerial("OPLtest1.csv");
+    }
+
+    @Test
+    public void testMPOParallelMatchesSerial() throws IOException {
+        assertParallelMatchesSerial("MPOtest1.csv");
+    }
+
+    @Test
+    public void testChunkEdgesFallMidLine() throws IOException {
+        File election = grow("OPLtest1.csv", false);
+        byte[] bytes = Files.readAllBytes(election.toPath());
+        HeaderProcessor header = new HeaderProcessor(election, folder.getRoot());
+        BallotReader reader = header.openBallots();
+        long bodyStart = reader.position();
+        reader.close();
+        // the same chunks parallelTally() cuts for three threads
+        long chunkSize = (bytes.length - bodyStart + 2) / 3;
+        int midLine = 0;
+        for(long edge = bodyStart + chunkSize; edge < bytes.length; edge += chunkSize) {
+            if(bytes[(int) edge - 1] != '\n') {
+                midLine++;
+            }
+        }
+        assertTrue(midLine > 0);
+        assertArrayEquals(tally(election, 1), tally(election, 3));
+    }
+
+    @Test
+    public void testBadLineFailsOnEveryThread() throws IOException {
+        File election = grow("OPLtest1.csv", true);
+        Files.write(election.toPath(), ",,,,,,,,,1\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        for(int threads : new int[] {1, 4}) {
+            try {
+                tally(election, threads);
+                fail("a ballot for candidate 10 of 6 was counted on " + threads + " thread(s)");
+            } catch (IndexOutOfBoundsException e) {
+                // expected, the count is abandoned instead of going on with no votes
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for keeping IR ballots in weighted groups of identical rankings. Run from the src folder, so the election files
+ * are found in ../testing
+ */
+public class IRBallotStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ArrayList<Candidate> candidates;
+    private IRBallotStore store;
+
+    @Before
+    public void setUp() {
+        candidates = new ArrayList<>();
+        candidates.add(new IRCandidate("Rosen", "D", 0));
+        candidates.add(new IRCandidate("Kleinberg", "R", 1));
+        candidates.add(new IRCandidate("Chou", "I", 2));
+        store = new IRBallotStore(candidates, 8);
+    }
+
+    @Test
+    public void testIdenticalRankingsShareAGroup() {
+        store.addBallot(new int[] {0, 1, 2}, 3);
+        store.addBallot(new int[] {0, 1, 2}, 3);
+        store.addBallots(new int[] {0, 1, 2}, 3, 3);
+        store.addBallot(new int[] {0, 2, -1}, 2);
+        store.addBallot(new int[] {1, 0, -1}, 2);
+
+        assertEquals(7, store.size());
+        assertEquals(3, store.getNumGroups());
+        assertEquals(6, candidates.get(0).getBallotCount());
+        assertEquals(1, candidates.get(1).getBallotCount());
+        assertEquals(0, candidates.get(2).getBallotCount());
+    }
+
+    @Test
+    public void testRemoveCandidateTransfersGroups() {
+        store.addBallots(new int[] {2, 1, -1}, 2, 4);
+        store.addBallots(new int[] {2, -1, -1}, 1, 2);
+        store.addBallots(new int[] {0, -1, -1}, 1, 5);
+
+        int exhausted = ((IRCandidate) candidates.get(2)).removeCandidate();
+
+        assertEquals(2, exhausted);
+        assertEquals(2, store.getExhausted());
+        assertEquals(4, candidates.get(1).getBallotCount());
+        assertEquals(5, candidates.get(0).getBallotCount());
+        assertTrue(store.isEliminated(2));
+    }
+
+    @Test
+    public void testAddAllKeepsGroupsAndWeights() {
+        ArrayList<Candidate> others = new ArrayList<>();
+        others.add(new IRCandidate("Rosen", "D", 0));
+        others.add(new IRCandidate("Kleinberg", "R", 1));
+        others.add(new IRCandidate("Chou", "I", 2));
+        IRBallotStore other = new IRBallotStore(others, 8);
+        other.addBallots(new int[] {1, 0, -1}, 2, 3);
+        store.addBallots(new int[] {1, 0, -1}, 2, 2);
+
+        store.addAll(other);
+
+        assertEquals(5, store.size());
+        assertEquals(1, store.getNumGroups());
+        assertEquals(5, candidates.get(1).getBallotCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBallotWithoutFirstChoiceRejected() {
+        store.addBallot(new int[] {-1, -1, -1}, 0);
+    }
+
+    private FileProcessor read(String election) throws IOException {
+        HeaderProcessor header = new HeaderProcessor(new File("../testing/" + election), folder.getRoot());
+        return new FileProcessor(header, header.openBallots(), 1);
+    }
+
+    /**
+     * Eliminates every candidate but the last from both stores, in ballot order, moving the groups in chunks in one store
+     * and in a single chunk in the other, and checks the stores agree after every elimination
+     */
+    private void assertChunksMatchSingleChunk(IRBallotStore chunked, ArrayList<Candidate> chunkedCandidates,
+                                              IRBallotStore single, ArrayList<Candidate> singleCandidates, int chunks) {
+        for(int removed = 0; removed<chunkedCandidates.size() - 1; removed++) {
+            assertEquals(single.removeCandidate((IRCandidate) singleCandidates.get(removed), 1),
+                chunked.removeCandidate((IRCandidate) chunkedCandidates.get(removed), chunks));
+            assertEquals(single.getExhausted(), chunked.getExhausted());
+            for(int i = removed + 1; i<chunkedCandidates.size(); i++) {
+                assertEquals(singleCandidates.get(i).getBallotCount(), chunkedCandidates.get(i).getBallotCount());
+                IntList expected = single.getBallots((IRCandidate) singleCandidates.get(i));
+                IntList actual = chunked.getBallots((IRCandidate) chunkedCandidates.get(i));
+                assertEquals(expected.size(), actual.size());
+                for(int j = 0; j<expected.size(); j++) {
+                    assertEquals(expected.get(j), actual.get(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedTransferMatchesSingleChunkOnFixtures() throws IOException {
+        for(String election : new String[] {"electionTest1.csv", "electionTest1update.csv", "electionTest3.csv",
+                                            "BallotRedistributeTester.csv", "ElectionTester.csv"}) {
+            for(int chunks = 2; chunks<=4; chunks++) {
+                FileProcessor chunked = read(election);
+                FileProcessor single = read(election);
+                assertChunksMatchSingleChunk(chunked.getBallotStore(), chunked.getCandidates(),
+                    single.getBallotStore(), single.getCandidates(), chunks);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedTransferMatchesSingleChunkOnRandomBallots() {
+        ArrayList<Candidate> others = new ArrayList<>();
+        for(int i = 0; i<3; i++) {
+            others.add(new IRCandidate(candidates.get(i).getName(), candidates.get(i).getParty(), i));
+        }
+        IRBallotStore single = new IRBallotStore(others, 8);
+        Random random = new Random(3);
+        for(int b = 0; b<5000; b++) {
+            int[] ranking = {random.nextInt(3), random.nextInt(3), random.nextInt(3)};
+            int length = 1 + random.nextInt(3);
+            if(ranking[1] == ranking[0] || length < 2) {
+                length = 1;
+            } else if(ranking[2] == ranking[0] || ranking[2] == ranking[1]) {
+                length = 2;
+            }
+            store.addBallot(ranking, length);
+            single.addBallot(ranking, length);
+        }
+        assertChunksMatchSingleChunk(store, candidates, single, others, 3);
+        assertEquals(5000, single.getExhausted() + others.get(2).getBallotCount());
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for counting IR elections, one candidate at a time and with batch elimination. Run from the src folder, so the
+ * election files are found in ../testing
+ */
+public class IRVotingSystemTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Baker leads on first choices, and Clark, Davis and Evans together have fewer ballots than Adams, so batch elimination
+     * removes all three in one round
+     */
+    private static final String BATCH_ELECTION = "IR\n5\nAdams (D), Baker (R), Clark (I), Davis (L), Evans (G)\n12\n"
+        + "2,1,3,,\n2,1,3,,\n2,1,3,,\n2,1,3,,\n2,1,3,,\n"
+        + "1,3,,2,\n1,3,,2,\n1,3,,2,\n1,3,,2,\n"
+        + ",2,1,3,\n2,,3,1,\n,2,,3,1\n";
+
+    /**
+     * Adams has 6 first choices, Baker 4, Clark 2 and Davis 1, with no ties at any point of the count, and Baker reaches a
+     * majority of 7 once Clark and Davis are out
+     */
+    private static final String MAJORITY_ELECTION = "IR\n4\nAdams (D), Baker (R), Clark (I), Davis (L)\n13\n"
+        + "1,2,,\n1,2,,\n1,2,,\n1,2,,\n1,2,,\n1,2,,\n"
+        + "2,1,,\n2,1,,\n2,1,,\n2,1,,\n"
+        + ",2,1,\n,2,1,\n,3,2,1\n";
+
+    private IRVotingSystem count(File election, ElectionOptions options, File outputDir) throws FileNotFoundException {
+        IRVotingSystem votingSystem = (IRVotingSystem) new HeaderProcessor(election, outputDir).parseHeader();
+        options.apply(votingSystem);
+        votingSystem.runElection();
+        return votingSystem;
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File election = folder.newFile(name);
+        Files.write(election.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return election;
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFirstChoicesCounted() throws IOException {
+        VotingSystem votingSystem = new HeaderProcessor(new File("../testing/electionTest1.csv"), folder.newFolder()).parseHeader();
+        int[] counts = new int[votingSystem.getCandidates().size()];
+        for(int i = 0; i<counts.length; i++) {
+            counts[i] = votingSystem.getCandidates().get(i).getBallotCount();
+        }
+        // the ballot ranking only Royce ranks fewer than half of the candidates
+        assertArrayEquals(new int[] {2, 2, 2, 0}, counts);
+    }
+
+    @Test
+    public void testMajorityWinner() throws IOException {
+        IRVotingSystem votingSystem = count(write("majority.csv", MAJORITY_ELECTION), new ElectionOptions(), folder.newFolder());
+        assertTrue(votingSystem.checkMajority());
+        assertArrayEquals(new String[] {"Baker"}, votingSystem.getWinners());
+    }
+
+    @Test
+    public void testElectionTest1Winner() throws IOException {
+        ElectionOptions options = ElectionOptions.parse(new String[] {"--seed", "11"});
+        IRVotingSystem votingSystem = count(new File("../testing/electionTest1.csv"), options, folder.newFolder());
+        assertArrayEquals(new String[] {"Kleinberg"}, votingSystem.getWinners());
+        assertEquals(7, votingSystem.getNumberOfBallots());
+    }
+
+    @Test
+    public void testCheckMajorityTrue() throws IOException {
+        ElectionOptions options = ElectionOptions.parse(new String[] {"--seed", "11"});
+        IRVotingSystem votingSystem = count(write("batch.csv", BATCH_ELECTION), options, folder.newFolder());
+        assertTrue(votingSystem.checkMajority());
+    }
+
+    @Test
+    public void testDefeatedGroup() throws IOException {
+        VotingSystem votingSystem = new HeaderProcessor(write("batch.csv", BATCH_ELECTION), folder.newFolder()).parseHeader();
+        List<String> group = new ArrayList<>();
+        for(IRCandidate c : ((IRVotingSystem) votingSystem).getDefeatedGroup()) {
+            group.add(c.getName());
+        }
+        // the three trailing candidates, then Adams, whom they cannot catch up with
+        assertEquals(Arrays.asList("Clark", "Davis", "Evans", "dams"), group);
+    }
+
+    @Test
+    public void testBatchEliminationWithoutTies() throws IOException {
+        File election = write("majority.csv", MAJORITY_ELECTION);
+        IRVotingSystem single = count(election, new ElectionOptions(), folder.newFolder());
+        IRVotingSystem together = count(election, ElectionOptions.parse(new String[] {"--batch-eliminate"}), folder.newFolder());
+        assertArrayEquals(new String[] {"Baker"}, single.getWinners());
+        assertArrayEquals(single.getWinners(), together.getWinners());
+    }
+
+    @Test
+    public void testBatchEliminationSameWinner() throws IOException {
+        File election = write("batch.csv", BATCH_ELECTION);
+        File oneAtATime = folder.newFolder();
+        File batch = folder.newFolder();
+        IRVotingSystem single = count(election, ElectionOptions.parse(new String[] {"--seed", "11"}), oneAtATime);
+        IRVotingSystem together = count(election, ElectionOptions.parse(new String[] {"--seed", "11", "--batch-eliminate"}), batch);
+
+        assertArrayEquals(new String[] {"Baker"}, single.getWinners());
+        assertArrayEquals(single.getWinners(), together.getWinners());
+
+        String singleAudit = read(new File(oneAtATime, Audit.FILE_NAME));
+        String batchAudit = read(new File(batch, Audit.FILE_NAME));
+        assertFalse(singleAudit.contains("CANDIDATES REMOVED TOGETHER"));
+        assertTrue(batchAudit.contains("CANDIDATES REMOVED TOGETHER"));
+        assertTrue(batchAudit.contains("Their combined 3 ballots are fewer than the 4 ballots of dams, so none of them can win."));
+        assertTrue(batchAudit.contains("Baker has won with 7 votes"));
+    }
+
+    @Test
+    public void testBatchEliminationSameWinnerOnFixtures() throws IOException {
+        for(String election : new String[] {"electionTest1.csv", "electionTest1update.csv", "electionTest3.csv",
+                                            "BallotRedistributeTester.csv", "ElectionTester.csv"}) {
+            for(long seed = 1; seed<=5; seed++) {
+                String[] args = {"--seed", Long.toString(seed)};
+                String[] batchArgs = {"--seed", Long.toString(seed), "--batch-eliminate"};
+                IRVotingSystem single = count(new File("../testing/" + election), ElectionOptions.parse(args), folder.newFolder());
+                IRVotingSystem together = count(new File("../testing/" + election), ElectionOptions.parse(batchArgs), folder.newFolder());
+                assertArrayEquals(election + " with seed " + seed, single.getWinners(), together.getWinners());
+            }
+        }
+    }
+
+    @Test
+    public void testBallotWithoutFirstChoiceInvalidated() throws IOException {
+        File election = write("nofirst.csv", "IR\n4\nRosen (D), Kleinberg (R), Chou (I), Royce (L)\n4\n1,2,,\n,1,2,\n,2,3,\n1,,2,\n");
+        File outputDir = folder.newFolder();
+        count(election, ElectionOptions.parse(new String[] {"--seed", "11"}), outputDir);
+
+        assertEquals(",2,3,,MALFORMED\n", read(new File(outputDir, InvalidBallotWriter.FILE_NAME)));
+        String audit = read(new File(outputDir, Audit.FILE_NAME));
+        assertTrue(audit.contains("Number of invalidated ballots: 1 (0 under-ranked, 1 malformed)"));
+        assertTrue(audit.contains("osen has 2 ballots"));
+        assertTrue(audit.contains("Kleinberg has 1 ballots"));
+        assertTrue(audit.contains("Chou has 0 ballots"));
+    }
+}
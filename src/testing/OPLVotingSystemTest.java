@@ -0,0 +1,99 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for seating OPL elections with the Hare quota and largest remainder. Run from the src folder, so the election
+ * files are found in ../testing
+ */
+public class OPLVotingSystemTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OPLVotingSystem count(File election, long seed) throws IOException {
+        File outputDir = folder.newFolder();
+        OPLVotingSystem votingSystem = (OPLVotingSystem) new HeaderProcessor(election, outputDir).parseHeader();
+        ElectionOptions.parse(new String[] {"--seed", Long.toString(seed)}).apply(votingSystem);
+        votingSystem.runElection();
+        return votingSystem;
+    }
+
+    private OPLVotingSystem count(String election, long seed) throws IOException {
+        return count(new File("../testing/" + election), seed);
+    }
+
+    private File write(String contents) throws IOException {
+        File election = folder.newFile();
+        Files.write(election.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return election;
+    }
+
+    @Test
+    public void testFixturesSeatAsBefore() throws IOException {
+        // the seats the fixtures were given before the remainder seats were allocated in one pass
+        assertArrayEquals(new String[] {"Borg", "ike", "Foster"}, count("OPLtest1.csv", 1).getWinners());
+        assertArrayEquals(new String[] {"Rob", "ohn"}, count("OPLtest2.csv", 1).getWinners());
+    }
+
+    @Test
+    public void testTieForLastSeatIsOneDraw() throws IOException {
+        HashSet<String> winners = new HashSet<>();
+        for(long seed = 1; seed<=20; seed++) {
+            OPLVotingSystem votingSystem = count("OPLtietest.csv", seed);
+            assertEquals(1, votingSystem.getWinners().length);
+            assertEquals(1, votingSystem.getTieBreaker().getDraws());
+            winners.add(votingSystem.getWinners()[0]);
+        }
+        assertEquals(2, winners.size());
+    }
+
+    @Test
+    public void testSeatsLeftEmptyWhenPartiesRunOut() throws IOException {
+        OPLVotingSystem votingSystem = count(write("OPL\n2\nAdams(D),Baker(R)\n3\n5\n1,\n1,\n1,\n,1\n,1\n"), 1);
+        assertEquals(2, votingSystem.getWinners().length);
+    }
+
+    @Test
+    public void testManyParties() throws IOException {
+        // 300 parties of two candidates, with 1 to 300 ballots for the first candidate of each, for 250 seats
+        StringBuilder text = new StringBuilder("OPL\n600\n");
+        for(int p = 0; p<300; p++) {
+            text.append(p == 0 ? "" : ",").append("A").append(p).append("(P").append(p).append("),B").append(p).append("(P").append(p).append(')');
+        }
+        int ballots = 300 * 301 / 2;
+        text.append("\n250\n").append(ballots).append('\n');
+        String[] commas = new String[600];
+        for(int c = 0; c<600; c++) {
+            commas[c] = ",".repeat(c) + "1" + ",".repeat(599 - c) + "\n";
+        }
+        for(int p = 0; p<300; p++) {
+            for(int b = 0; b<=p; b++) {
+                text.append(commas[2 * p]);
+            }
+        }
+        OPLVotingSystem votingSystem = count(write(text.toString()), 1);
+        assertEquals(250, votingSystem.getWinners().length);
+
+        // the audited rounds give each party the seats HareApportionment works out for it
+        HashMap<String, String> partyOf = new HashMap<>();
+        for(Candidate c : votingSystem.getCandidates()) {
+            partyOf.put(c.getName(), c.getParty());
+        }
+        HashMap<String, Integer> seated = new HashMap<>();
+        for(String winner : votingSystem.getWinners()) {
+            seated.merge(partyOf.get(winner), 1, Integer::sum);
+        }
+        for(Map.Entry<String, Integer> party : votingSystem.apportion(new HareApportionment()).entrySet()) {
+            assertEquals(party.getKey(), party.getValue(), seated.getOrDefault(party.getKey(), 0));
+        }
+    }
+}
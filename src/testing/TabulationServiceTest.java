@@ -0,0 +1,121 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for counting elections through TabulationService, from Java and over HTTP on the loopback interface. Run from the
+ * src folder, so the election files are found in ../testing
+ */
+public class TabulationServiceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File outputDir;
+    private TabulationService service;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = folder.newFolder();
+        service = new TabulationService(outputDir, new ElectionOptions());
+        service.setMaxUpload(4096);
+        service.start(0, 2);
+    }
+
+    @After
+    public void tearDown() {
+        service.stop();
+    }
+
+    /**
+     * Sends a request to the service and reads the status and body of the response
+     */
+    private String[] request(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + service.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if(body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        in.close();
+        return new String[] {Integer.toString(status), response};
+    }
+
+    private String pathOf(String election) {
+        return URLEncoder.encode(new File("../testing/" + election).getAbsolutePath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testHealth() throws IOException {
+        assertArrayEquals(new String[] {"200", "ok\n"}, request("GET", "/health", null));
+    }
+
+    @Test
+    public void testTabulateFromJava() {
+        ElectionResult result = service.tabulate(new File("../testing/electionTest1.csv"), ElectionOptions.parse(new String[] {"--seed", "11"}));
+        assertNull(result.getError());
+        assertEquals("IR", result.getVotingSystem());
+        assertArrayEquals(new String[] {"Kleinberg"}, result.getWinners());
+        assertEquals(Long.valueOf(11), result.getTieSeed());
+    }
+
+    @Test
+    public void testTabulatePath() throws IOException {
+        String[] response = request("POST", "/tabulate?seed=11&path=" + pathOf("electionTest1.csv"), new byte[0]);
+        assertEquals("200", response[0]);
+        assertTrue(response[1].contains("\"voting\":\"IR\""));
+        assertTrue(response[1].contains("\"winners\":[\"Kleinberg\"]"));
+    }
+
+    @Test
+    public void testTabulateUploadIsDeleted() throws IOException {
+        byte[] election = Files.readAllBytes(new File("../testing/OPLtest1.csv").toPath());
+        String[] response = request("POST", "/tabulate?seed=1&apportionment=dhondt", election);
+        assertEquals("200", response[0]);
+        assertTrue(response[1].contains("\"voting\":\"OPL\""));
+        String[] left = new File(outputDir, TabulationService.UPLOAD_DIR).list();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void testBadOptionsRejected() throws IOException {
+        String path = "/tabulate?path=" + pathOf("electionTest1.csv");
+        assertArrayEquals(new String[] {"400", "ERROR: Seed abc is not a whole number.\n"}, request("POST", path + "&seed=abc", new byte[0]));
+        assertEquals("400", request("POST", path + "&audit-level=foo", new byte[0])[0]);
+        assertEquals("400", request("POST", path + "&apportionment=bogus", new byte[0])[0]);
+        assertArrayEquals(new String[] {"400", "ERROR: Parameter metrics takes no value.\n"}, request("POST", path + "&metrics=false", new byte[0]));
+        assertArrayEquals(new String[] {"400", "ERROR: Parameter seed needs a value.\n"}, request("POST", path + "&seed", new byte[0]));
+        assertEquals("400", request("POST", path + "&threads=4", new byte[0])[0]);
+    }
+
+    @Test
+    public void testLargeUploadRejected() throws IOException {
+        String[] response = request("POST", "/tabulate", new byte[5000]);
+        assertEquals("413", response[0]);
+        String[] left = new File(outputDir, TabulationService.UPLOAD_DIR).list();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+        assertEquals("404", request("POST", "/tabulate?path=" + pathOf("nosuchfile.csv"), new byte[0])[0]);
+        assertEquals("405", request("GET", "/tabulate", null)[0]);
+    }
+}
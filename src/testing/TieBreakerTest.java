@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that ties broken at random are repeated exactly by the same seed. Run from the src folder, so the election files
+ * are found in ../testing
+ */
+public class TieBreakerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VotingSystem count(String election, long seed, File outputDir) throws IOException {
+        VotingSystem votingSystem = new HeaderProcessor(new File("../testing/" + election), outputDir).parseHeader();
+        ElectionOptions.parse(new String[] {"--seed", Long.toString(seed)}).apply(votingSystem);
+        votingSystem.runElection();
+        return votingSystem;
+    }
+
+    private List<Integer> toList(IntList seated) {
+        List<Integer> list = new ArrayList<>();
+        for(int i = 0; i<seated.size(); i++) {
+            list.add(seated.get(i));
+        }
+        return list;
+    }
+
+    @Test
+    public void testSameSeedSameDraws() {
+        TieBreaker first = new TieBreaker(42);
+        TieBreaker second = new TieBreaker(42);
+        for(int i = 0; i<100; i++) {
+            assertEquals(first.pick(7), second.pick(7));
+        }
+        List<Integer> shuffled = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5));
+        List<Integer> again = new ArrayList<>(shuffled);
+        first.shuffle(shuffled);
+        second.shuffle(again);
+        assertEquals(shuffled, again);
+        assertEquals(101, first.getDraws());
+        assertEquals(42, first.getSeed());
+    }
+
+    @Test
+    public void testNoChoiceIsNoDraw() {
+        TieBreaker tieBreaker = new TieBreaker(42);
+        assertEquals(0, tieBreaker.pick(1));
+        tieBreaker.shuffle(new ArrayList<>(Arrays.asList(3)));
+        assertEquals(0, tieBreaker.getDraws());
+    }
+
+    @Test
+    public void testSeededTrialRepeats() throws IOException {
+        TieBreaking votingSystem = (TieBreaking) count("threewaytiefortwoseats.csv", 1, folder.newFolder());
+        HashSet<List<Integer>> outcomes = new HashSet<>();
+        for(long seed = 1; seed<=6; seed++) {
+            List<Integer> seated = toList(votingSystem.runTieTrial(new TieBreaker(seed)));
+            assertEquals(seated, toList(votingSystem.runTieTrial(new TieBreaker(seed))));
+            assertEquals(2, seated.size());
+            outcomes.add(seated);
+        }
+        assertTrue(outcomes.size() > 1);
+    }
+
+    @Test
+    public void testSeededElectionRepeats() throws IOException {
+        HashSet<List<String>> outcomes = new HashSet<>();
+        for(long seed = 1; seed<=6; seed++) {
+            File outputDir = folder.newFolder();
+            String[] winners = ElectionResult.winnersOf(count("threewaytiefortwoseats.csv", seed, outputDir));
+            String[] again = ElectionResult.winnersOf(count("threewaytiefortwoseats.csv", seed, folder.newFolder()));
+            assertArrayEquals(winners, again);
+            assertEquals(2, winners.length);
+            outcomes.add(Arrays.asList(winners));
+
+            String audit = new String(Files.readAllBytes(new File(outputDir, Audit.FILE_NAME).toPath()), StandardCharsets.UTF_8);
+            assertTrue(audit.contains("run again with --seed " + seed + " to repeat them."));
+        }
+        assertTrue(outcomes.size() > 1);
+    }
+
+    @Test
+    public void testSeededSimulationRepeats() throws IOException {
+        VotingSystem votingSystem = count("threewaytiefortwoseats.csv", 1, folder.newFolder());
+        double[] first = new TieSimulator(1000, new TieBreaker(7)).run((TieBreaking) votingSystem, 6);
+        double[] second = new TieSimulator(1000, new TieBreaker(7)).run((TieBreaking) votingSystem, 6);
+        assertArrayEquals(first, second, 0.0);
+
+        double seats = 0;
+        for(double p : first) {
+            seats += p;
+        }
+        assertEquals(2.0, seats, 1e-9);
+        // Deutsch, Jones and Smith are never in the three-way tie for the two seats
+        assertEquals(0.0, first[2], 0.0);
+        assertEquals(0.0, first[4], 0.0);
+        assertEquals(0.0, first[5], 0.0);
+    }
+
+    @Test
+    public void testOPLTrialSeatsLikeTheCount() throws IOException {
+        VotingSystem votingSystem = count("OPLtest1.csv", 1, folder.newFolder());
+        IntList seated = ((TieBreaking) votingSystem).runTieTrial(new TieBreaker(3));
+        HashSet<String> trial = new HashSet<>();
+        for(int i = 0; i<seated.size(); i++) {
+            trial.add(votingSystem.getCandidates().get(seated.get(i)).getName());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(ElectionResult.winnersOf(votingSystem))), trial);
+    }
+
+    @Test
+    public void testCertainResultNeedsOneRun() throws IOException {
+        VotingSystem votingSystem = count("MPOtest2.csv", 1, folder.newFolder());
+        TieSimulator simulator = new TieSimulator(1000, new TieBreaker(7));
+        simulator.run((TieBreaking) votingSystem, votingSystem.getCandidates().size());
+        assertEquals(1, simulator.getTrialsRun());
+    }
+}